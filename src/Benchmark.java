@@ -0,0 +1,349 @@
+import java.lang.management.ManagementFactory;
+
+/**
+Benchmark
+Measures the engine and the renderer without a window: turn
+throughput, per-frame drawing cost and the bytes allocated per
+operation, across board sizes and spider counts. Each case is
+warmed up before it is measured, and only the measured operation
+is timed, not its setup.
+Run with: java -cp target/classes Benchmark [name filter]
+*/
+public class Benchmark
+{
+	static final long WARMUP_NANOS = 2_000_000_000L;
+	static final long MEASURE_NANOS = 3_000_000_000L;
+	static final long SEED = 42;
+
+	static final com.sun.management.ThreadMXBean THREADS =
+			(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+	/**
+	Case
+	One benchmark: setup prepares an operation outside of the
+	measurement and run performs it, returning how many operations
+	it counts for
+	*/
+	static abstract class Case
+	{
+		String name;
+
+		Case(String name)
+		{
+			this.name = name;
+
+		}// Case constructor
+
+		abstract void setup();
+		abstract long run();
+
+	}// Case
+
+	/**
+	Turns
+	Engine turns on a board seeded with spiders
+	*/
+	static class Turns extends Case
+	{
+		static final int TURNS = 10;
+
+		int size, spiders;
+		Engine engine;
+
+		Turns(int size, int spiders)
+		{
+			super("turn " + size + "x" + size + " spiders=" + spiders);
+			this.size = size;
+			this.spiders = spiders;
+
+		}// Turns constructor
+
+		void setup()
+		{
+			engine = swarmed(size, spiders, false);
+
+		}// setup
+
+		long run()
+		{
+			for (int i = 0; i < TURNS; i++)
+			{
+				engine.next();
+				engine.clearDirty();
+			}
+
+			return TURNS;
+
+		}// run
+
+	}// Turns
+
+	/**
+	Swarms
+	The spiders' moves alone, aimed and made over and over on one
+	distance field, without the search that turns start with
+	*/
+	static class Swarms extends Case
+	{
+		static final int MOVES = 10;
+
+		int size, spiders;
+		boolean sequential;
+		Engine engine;
+
+		Swarms(int size, int spiders, boolean sequential)
+		{
+			super("swarm " + size + "x" + size + " spiders=" + spiders + (sequential ? " sequential" : ""));
+			this.size = size;
+			this.spiders = spiders;
+			this.sequential = sequential;
+
+		}// Swarms constructor
+
+		void setup()
+		{
+			engine = swarmed(size, spiders, sequential);
+			engine.computeDistances();
+
+			// a first sweep grows the dirty-cell list to size
+			engine.moveSpiders();
+			engine.clearDirty();
+
+		}// setup
+
+		long run()
+		{
+			for (int i = 0; i < MOVES; i++)
+			{
+				engine.moveSpiders();
+				engine.clearDirty();
+			}
+
+			return MOVES;
+
+		}// run
+
+	}// Swarms
+
+	/**
+	Copies
+	A saved game loaded back into a scratch one, as every iteration
+	of a bot's search does
+	*/
+	static class Copies extends Case
+	{
+		int size, spiders;
+		Engine saved;
+		Engine scratch;
+
+		Copies(int size, int spiders)
+		{
+			super("load " + size + "x" + size + " spiders=" + spiders);
+			this.size = size;
+			this.spiders = spiders;
+
+		}// Copies constructor
+
+		void setup()
+		{
+			if (saved == null)
+			{
+				saved = swarmed(size, spiders, false);
+				scratch = saved.copy();
+			}
+
+		}// setup
+
+		long run()
+		{
+			scratch.load(saved);
+
+			return 1;
+
+		}// run
+
+	}// Copies
+
+	/**
+	Games
+	Whole games of random commands on the default board
+	*/
+	static class Games extends Case
+	{
+		SplitMix dice = new SplitMix(SEED);
+		Engine engine;
+
+		Games()
+		{
+			super("play 21x21 random commands");
+
+		}// Games constructor
+
+		void setup()
+		{
+			engine = new Engine(new Config(), dice.nextLong());
+
+		}// setup
+
+		long run()
+		{
+			while (!engine.over)
+			{
+				engine.play(dice.nextInt(Engine.COMMANDS));
+				engine.clearDirty();
+			}
+
+			return engine.turn;
+
+		}// run
+
+	}// Games
+
+	/**
+	Frames
+	Drawing the in-game screen after a turn, the turn itself untimed.
+	The screen's header and footer lines are widened once, when the
+	frame is made, so only patching them and the cells is measured
+	*/
+	static class Frames extends Case
+	{
+		int size, spiders;
+		int turns;
+		Engine engine;
+		BoardFrame frame;
+
+		Frames(int size, int spiders)
+		{
+			super("draw " + size + "x" + size + " spiders=" + spiders);
+			this.size = size;
+			this.spiders = spiders;
+			frame = new BoardFrame(BoardFrame.DESIGN_SIZE, BoardFrame.DESIGN_SIZE);
+
+		}// Frames constructor
+
+		void setup()
+		{
+			if (engine == null || turns++ == 50)
+			{
+				engine = swarmed(size, spiders, false);
+				frame.drawScreen(engine);
+				turns = 0;
+			}
+
+			engine.next();
+
+		}// setup
+
+		long run()
+		{
+			frame.drawScreen(engine);
+			frame.clearChanges();
+
+			return 1;
+
+		}// run
+
+	}// Frames
+
+	/**
+	swarmed
+	Engine on a square board with the given number of spiders
+	scattered at random, none of them near the player, moved on
+	one thread or on the common pool
+	*/
+	static Engine swarmed(int size, int spiders, boolean sequential)
+	{
+		Config config = new Config();
+		config.rows = size;
+		config.cols = size;
+		config.sequential = sequential;
+
+		Engine engine = new Engine(config, SEED);
+		SplitMix dice = new SplitMix(SEED);
+		int clear = size/4;
+
+		while (engine.swarm.size < spiders)
+		{
+			int r = dice.nextInt(size);
+			int c = dice.nextInt(size);
+
+			if (Math.abs(r - engine.player.row) <= clear && Math.abs(c - engine.player.col) <= clear)
+				continue;
+
+			if (engine.isFloor(r, c))
+				engine.addSpider(r, c);
+		}
+
+		engine.clearDirty();
+		return engine;
+
+	}// swarmed
+
+	/**
+	measure
+	Warms a case up, then runs it until the measuring time is used
+	up and prints its time and allocation per operation
+	*/
+	static void measure(Case bench)
+	{
+		long end = System.nanoTime() + WARMUP_NANOS;
+
+		while (System.nanoTime() < end)
+		{
+			bench.setup();
+			bench.run();
+		}
+
+		long ops = 0, nanos = 0, bytes = 0;
+
+		// setups are not measured but count against this deadline, so
+		// cases with slow setups stop early with fewer operations
+		end = System.nanoTime() + 4*MEASURE_NANOS;
+
+		while (nanos < MEASURE_NANOS && System.nanoTime() < end)
+		{
+			bench.setup();
+
+			long allocated = THREADS.getCurrentThreadAllocatedBytes();
+			long start = System.nanoTime();
+
+			ops += bench.run();
+
+			nanos += System.nanoTime() - start;
+			bytes += THREADS.getCurrentThreadAllocatedBytes() - allocated;
+		}
+
+		System.out.printf("%-36s %14.1f ns/op %14.0f ops/s %10.1f B/op%n",
+				bench.name, (double)nanos/ops, ops*1e9/nanos, (double)bytes/ops);
+
+	}// measure
+
+	public static void main(String[] args)
+	{
+		String filter = (args.length > 0) ? args[0] : "";
+
+		Case[] cases =
+		{
+			new Games(),
+			new Turns(21, 20),
+			new Turns(256, 2000),
+			new Turns(1024, 50000),
+			new Swarms(1024, 200000, true),
+			new Swarms(1024, 200000, false),
+			new Swarms(2048, 800000, true),
+			new Swarms(2048, 800000, false),
+			new Copies(21, 20),
+			new Copies(256, 2000),
+			new Copies(1024, 50000),
+			new Frames(21, 20),
+			new Frames(256, 2000),
+			new Frames(1024, 50000),
+		};
+
+		for (Case bench : cases)
+			if (bench.name.contains(filter))
+				measure(bench);
+
+	}// main
+
+}// Benchmark
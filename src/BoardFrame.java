@@ -0,0 +1,348 @@
+import java.util.Arrays;
+
+/**
+BoardFrame
+Text of an in-game screen kept in one reusable char array: a header
+line, the bordered view of the board and a footer line. Records which
+character ranges changed since the frame was last shown, so a console
+only has to patch those instead of replacing its whole text.
+Boards larger than the view are shown through a window that follows
+the player
+*/
+public class BoardFrame
+{
+	static final int DESIGN_SIZE = 21; // view size the screens were drawn for
+
+	// header lines for each stage of the reload bar, ready first
+	static final String[] RELOAD_HEADERS =
+	{
+		" -=-=-=-=-=-=[ =-------------> ]=-=-=-=-=-=-",
+		" -=-=-=-=-=-=[    ---------    ]=-=-=-=-=-=-",
+		" -=-=-=-=-=-=[       ---       ]=-=-=-=-=-=-",
+		" -=-=-=-=-=-=[                 ]=-=-=-=-=-=-",
+	};
+	static final String GAME_OVER_HEADER = " -=-=-=-=-=-=-=-[ GAME OVER ]-=-=-=-=-=-=-=-";
+	static final String GAME_OVER_FOOTER = " -=-=-=-=-[ Press ESC to continue ]-=-=-=-=-";
+	static final String SCORE_FOOTER = " -=-=-=-=-=-=-=-=-=[ 000 ]=-=-=-=-=-=-=-=-=-";
+	static final int SCORE_WIDTH = 3;
+
+	int rows, cols; // size of the view
+	int top, left;  // board row and column shown at the view's corner
+	int width;  // characters in the header and footer lines
+	int stride; // characters in a board line, including its line break
+	int footer; // offset of the footer line
+
+	char[] text;
+
+	int[] changes; // start and end offsets of each changed range
+	int changeCount;
+	boolean redraw; // set when all of the text has changed
+
+	// header and footer lines widened to the frame once and for all;
+	// the score is written into its footer line in place
+	char[][] reloadHeaders;
+	char[] gameOverHeader;
+	char[] gameOverFooter;
+	char[] scoreFooter;
+	int scoreOffset; // of the score in scoreFooter
+
+	Engine engine; // engine whose board is drawn
+
+	BoardFrame(int rows, int cols)
+	{
+		this.rows = rows;
+		this.cols = cols;
+
+		width = width(cols);
+		stride = 2*cols + 4;
+		footer = width + 1 + rows*stride;
+
+		text = new char[footer + width];
+		Arrays.fill(text, ' ');
+		text[width] = '\n';
+
+		for (int r = 0; r < rows; r++)
+		{
+			int line = width + 1 + r*stride;
+
+			text[line] = (r == rows - 1) ? '\\' : '/';
+			text[line + stride - 2] = (r == 0) ? '\\' : '/';
+			text[line + stride - 1] = '\n';
+		}
+
+		changes = new int[64];
+		changeCount = 0;
+		redraw = true;
+
+		reloadHeaders = new char[RELOAD_HEADERS.length][];
+		for (int i = 0; i < RELOAD_HEADERS.length; i++)
+			reloadHeaders[i] = line(RELOAD_HEADERS[i]);
+
+		gameOverHeader = line(GAME_OVER_HEADER);
+		gameOverFooter = line(GAME_OVER_FOOTER);
+		scoreFooter = line(SCORE_FOOTER);
+		scoreOffset = new String(scoreFooter).indexOf("[ ") + 2;
+
+	}// BoardFrame constructor
+
+	/**
+	offset
+	Offset in the text of the given board row and column
+	*/
+	int offset(int r, int c)
+	{
+		return width + 1 + r*stride + 2 + 2*c;
+
+	}// offset
+
+	/**
+	width
+	Characters in the header and footer lines of a view with the
+	given number of columns; board lines are one longer
+	*/
+	static int width(int cols)
+	{
+		return 2*cols + 2;
+
+	}// width
+
+	/**
+	widen
+	Stretches a line drawn for the design width to the given width.
+	Border lines such as " -=-=[ 000 ]=-=-" grow their dashes evenly
+	on both sides, other lines get spaces on both sides inside their
+	edge characters, keeping what is between them centred
+	*/
+	static String widen(String line, int width)
+	{
+		int extra = width - width(DESIGN_SIZE);
+
+		if (extra <= 0 || line.isEmpty())
+			return line;
+
+		StringBuilder wide = new StringBuilder(line.length() + extra);
+
+		if (line.startsWith(" -"))
+		{
+			int left = (extra/2) & ~1; // pairs keep the dashes alternating
+
+			wide.append(line, 0, 1);
+			for (int i = 0; i < left; i += 2)
+				wide.append("-=");
+			wide.append(line, 1, line.length() - 1);
+			for (int i = left; i < extra; i += 2)
+				wide.append("-=");
+			wide.append(line, line.length() - 1, line.length());
+		}
+		else
+		{
+			wide.append(line, 0, 1);
+			wide.append(" ".repeat(extra/2));
+			wide.append(line, 1, line.length() - 1);
+			wide.append(" ".repeat(extra - extra/2));
+			wide.append(line, line.length() - 1, line.length());
+		}
+
+		return wide.toString();
+
+	}// widen
+
+	/**
+	fit
+	Stretches a full screen drawn for the design size to a view of
+	the given size. Lines are widened and blank lines are added
+	evenly above and below the screen's contents
+	*/
+	static String fit(String screen, int rows, int cols)
+	{
+		if (rows <= DESIGN_SIZE && cols <= DESIGN_SIZE)
+			return screen;
+
+		String[] lines = screen.split("\n", -1);
+		String blank = widen("/" + " ".repeat(width(DESIGN_SIZE) - 1) + "/", width(cols));
+		int extra = rows - DESIGN_SIZE;
+
+		StringBuilder out = new StringBuilder();
+
+		for (int i = 0; i < lines.length; i++)
+		{
+			if (i == 2)
+				for (int j = 0; j < extra/2; j++)
+					out.append(blank).append('\n');
+
+			if (i == lines.length - 2)
+				for (int j = extra/2; j < extra; j++)
+					out.append(blank).append('\n');
+
+			out.append(widen(lines[i], width(cols)));
+
+			if (i < lines.length - 1)
+				out.append('\n');
+		}
+
+		return out.toString();
+
+	}// fit
+
+	/**
+	line
+	A header or footer line widened to the frame's width, padded
+	with spaces
+	*/
+	char[] line(String design)
+	{
+		char[] line = new char[width];
+		String wide = widen(design, width);
+
+		for (int i = 0; i < width; i++)
+			line[i] = (i < wide.length()) ? wide.charAt(i) : ' ';
+
+		return line;
+
+	}// line
+
+	/**
+	setHeader
+	Writes the line shown above the board
+	*/
+	void setHeader(String line)
+	{
+		setLine(0, line(line));
+
+	}// setHeader
+
+	/**
+	setFooter
+	Writes the line shown below the board
+	*/
+	void setFooter(String line)
+	{
+		setLine(footer, line(line));
+
+	}// setFooter
+
+	/**
+	setLine
+	Writes a header or footer line, as wide as the frame, starting
+	at the given offset
+	*/
+	void setLine(int offset, char[] line)
+	{
+		for (int i = 0; i < width; i++)
+			set(offset + i, line[i]);
+
+	}// setLine
+
+	/**
+	drawScreen
+	Draws the whole in-game screen of the given engine: the reload
+	bar above the board and the score below it, or the game over
+	lines once the player was caught. Allocates nothing
+	*/
+	void drawScreen(Engine e)
+	{
+		if (e.over)
+			setLine(0, gameOverHeader);
+		else
+		{
+			// stages of the bar, as drawn for the default reload time of
+			// 3, worked out in long so that no reload time overflows
+			int stage = (e.reloadTime == 0) ? 0 :
+					(int)Math.min(3, (3L*e.player.turnsToReady + e.reloadTime - 1)/e.reloadTime);
+
+			setLine(0, reloadHeaders[stage]);
+		}
+
+		draw(e);
+
+		if (e.over)
+			setLine(footer, gameOverFooter);
+		else
+		{
+			Digits.write(scoreFooter, scoreOffset, SCORE_WIDTH, e.score);
+			setLine(footer, scoreFooter);
+		}
+
+	}// drawScreen
+
+	/**
+	draw
+	Brings the view up to date with the given engine. Only the cells
+	the engine marked dirty are redrawn, unless the engine is not the
+	one drawn last time or the view had to move to follow the player
+	*/
+	void draw(Engine e)
+	{
+		int newTop = Math.max(0, Math.min(e.player.row - rows/2, e.rows - rows));
+		int newLeft = Math.max(0, Math.min(e.player.col - cols/2, e.cols - cols));
+
+		if (e != engine || newTop != top || newLeft != left)
+		{
+			engine = e;
+			top = newTop;
+			left = newLeft;
+
+			for (int r = 0; r < rows; r++)
+				for (int c = 0; c < cols; c++)
+					text[offset(r, c)] = e.glyph(top + r, left + c);
+
+			redraw = true;
+		}
+		else
+		{
+			for (int i = 0; i < e.dirtyCount; i++)
+			{
+				int r = e.dirty[i]/e.cols - top;
+				int c = e.dirty[i]%e.cols - left;
+
+				if (0 <= r && r < rows && 0 <= c && c < cols)
+					set(offset(r, c), e.glyph(top + r, left + c));
+			}
+		}
+
+		e.clearDirty();
+
+	}// draw
+
+	/**
+	set
+	Writes one character, recording the change if it differs from
+	what is already there. Changes next to the previous one extend
+	its range
+	*/
+	void set(int offset, char ch)
+	{
+		if (text[offset] == ch)
+			return;
+
+		text[offset] = ch;
+
+		if (redraw)
+			return;
+
+		if (changeCount > 0 && changes[changeCount - 1] == offset)
+		{
+			changes[changeCount - 1]++;
+			return;
+		}
+
+		if (changeCount == changes.length)
+			changes = Arrays.copyOf(changes, 2*changes.length);
+
+		changes[changeCount++] = offset;
+		changes[changeCount++] = offset + 1;
+
+	}// set
+
+	/**
+	clearChanges
+	Forgets the recorded changes once they have been shown
+	*/
+	void clearChanges()
+	{
+		changeCount = 0;
+		redraw = false;
+
+	}// clearChanges
+
+}// BoardFrame
@@ -0,0 +1,342 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+Bot
+Plays the game by Monte Carlo tree search. For every move it grows
+one search tree per core on a fork-join pool, each from its own copy
+of the game, and plays the command the trees visited most between
+them. The bot is not told the spawns to come: each tree rerolls them
+from a seed of its own, so the trees together weigh the command
+against as many futures. The same seed and the same game always give
+the same command, however the trees are scheduled.
+Run headless as an end-to-end benchmark of the engine with:
+java -cp target/classes Bot [games] [iterations] [trees]
+*/
+public class Bot
+{
+	static final int DEFAULT_ITERATIONS = 4000; // rollouts per move, between all trees
+	static final int ROLLOUT_TURNS = 20; // turns a rollout plays at most, past the tree
+	static final double EXPLORATION = 1.4;
+	static final double SCORE_WEIGHT = 0.05; // reward of a point against surviving the rollout
+	static final int MAX_TURNS = 10_000; // turns after which a headless game is called off
+
+	ForkJoinPool pool;
+	int iterations;
+	int trees;
+	SplitMix seeds; // seeds each tree
+
+	long simulated; // turns played by all the searches so far
+
+	Bot(int iterations, int trees, long seed)
+	{
+		this.iterations = Math.max(iterations, trees);
+		this.trees = trees;
+
+		pool = ForkJoinPool.commonPool();
+		seeds = new SplitMix(seed);
+		simulated = 0;
+
+	}// Bot constructor
+
+	Bot(int iterations, long seed)
+	{
+		this(iterations, Math.max(1, ForkJoinPool.getCommonPoolParallelism()), seed);
+
+	}// Bot parallel constructor
+
+	/**
+	choose
+	Command to play next in the given game, which is not over and
+	has no arrow flying. The game itself is left untouched
+	*/
+	int choose(Engine engine)
+	{
+		final Search[] searches = new Search[trees];
+
+		for (int i = 0; i < trees; i++)
+			searches[i] = new Search(engine, seeds.nextLong(), iterations/trees + ((i < iterations%trees) ? 1 : 0));
+
+		pool.invoke(new RecursiveAction()
+		{
+			protected void compute()
+			{
+				invokeAll(searches);
+
+			}// compute
+		});
+
+		long[] visits = new long[Engine.COMMANDS];
+
+		for (Search search : searches)
+		{
+			simulated += search.simulated;
+
+			for (Node child = search.tree.children; child != null; child = child.sibling)
+				visits[child.command] += child.visits;
+		}
+
+		int best = Engine.WAIT;
+
+		for (int command = 0; command < Engine.COMMANDS; command++)
+			if (visits[command] > visits[best])
+				best = command;
+
+		return best;
+
+	}// choose
+
+	/**
+	Node
+	A command in a search tree, with the visits and the reward of
+	the rollouts that went through it. The commands that can be
+	played after it are found the first time the search gets there
+	*/
+	static class Node
+	{
+		int command;
+		Node children; // first child
+		Node sibling;  // next child of the same parent
+
+		int[] untried; // commands not expanded yet, the first untriedCount of them
+		int untriedCount;
+
+		int visits;
+		double reward;
+
+		Node(int command)
+		{
+			this.command = command;
+
+		}// Node constructor
+
+		/**
+		select
+		Child with the best upper confidence bound
+		*/
+		Node select()
+		{
+			double logVisits = Math.log(visits);
+			Node best = null;
+			double bestBound = Double.NEGATIVE_INFINITY;
+
+			for (Node child = children; child != null; child = child.sibling)
+			{
+				double bound = child.reward/child.visits + EXPLORATION*Math.sqrt(logVisits/child.visits);
+
+				if (bound > bestBound)
+				{
+					best = child;
+					bestBound = bound;
+				}
+			}
+
+			return best;
+
+		}// select
+
+	}// Node
+
+	/**
+	Search
+	One tree, grown from a copy of the game with its own rolls. Every
+	iteration goes back to the root state by loading it into the same
+	scratch game, so the tree only has to hold commands
+	*/
+	@SuppressWarnings("serial")
+	static class Search extends RecursiveAction
+	{
+		Engine root;
+		Engine state; // scratch copy played on by each iteration
+		SplitMix dice; // picks the rollouts' commands
+		int iterations;
+		Node tree;
+		Node[] path; // nodes the iteration went through, root first
+		long simulated;
+
+		Search(Engine engine, long seed, int iterations)
+		{
+			this.iterations = iterations;
+
+			dice = new SplitMix(seed);
+			root = new Engine(engine);
+			root.random.state = dice.nextLong();
+			state = new Engine(root);
+			tree = new Node(Engine.WAIT);
+			path = new Node[64];
+			simulated = 0;
+
+		}// Search constructor
+
+		protected void compute()
+		{
+			for (int i = 0; i < iterations; i++)
+				iterate();
+
+		}// compute
+
+		/**
+		iterate
+		Walks down the tree by the best bounds, adds one command
+		under where it stops, plays on at random from there and
+		credits the result to every node on the way
+		*/
+		void iterate()
+		{
+			state.load(root);
+
+			int depth = 0;
+			Node node = tree;
+			path[depth++] = node;
+
+			while (true)
+			{
+				if (node.untried == null)
+					expandable(node);
+
+				if (state.over || (node.untriedCount == 0 && node.children == null))
+					break;
+
+				if (node.untriedCount > 0)
+				{
+					// expand
+					int pick = dice.nextInt(node.untriedCount);
+					int command = node.untried[pick];
+
+					node.untried[pick] = node.untried[--node.untriedCount];
+
+					Node child = new Node(command);
+					child.sibling = node.children;
+					node.children = child;
+
+					state.play(command);
+					node = child;
+
+					if (depth == path.length)
+						path = Arrays.copyOf(path, 2*depth);
+
+					path[depth++] = node;
+					break;
+				}
+
+				node = node.select();
+				state.play(node.command);
+
+				if (depth == path.length)
+					path = Arrays.copyOf(path, 2*depth);
+
+				path[depth++] = node;
+			}
+
+			rollout();
+
+			double reward = reward();
+			simulated += state.turn - root.turn;
+
+			for (int i = 0; i < depth; i++)
+			{
+				path[i].visits++;
+				path[i].reward += reward;
+			}
+
+		}// iterate
+
+		/**
+		expandable
+		Lists the commands that can be played from a node, whose
+		state the scratch game is in
+		*/
+		void expandable(Node node)
+		{
+			node.untried = new int[Engine.COMMANDS];
+			node.untriedCount = 0;
+
+			for (int command = 0; command < Engine.COMMANDS; command++)
+				if (state.canPlay(command))
+					node.untried[node.untriedCount++] = command;
+
+		}// expandable
+
+		/**
+		rollout
+		Plays commands picked at random among those that can be
+		played, with equal odds, until the game is over or has gone
+		on long enough
+		*/
+		void rollout()
+		{
+			int end = state.turn + ROLLOUT_TURNS;
+
+			while (!state.over && state.turn < end)
+			{
+				int command;
+
+				// drawn again until it can be played, which leaves every
+				// command that can as likely; waiting always can
+				do
+				{
+					command = dice.nextInt(Engine.COMMANDS);
+				}
+				while (!state.canPlay(command));
+
+				state.play(command);
+			}
+
+		}// rollout
+
+		/**
+		reward
+		Worth of the state a rollout ended in, from 0 for being caught
+		at once to 1 for surviving it, plus the points scored since
+		the root
+		*/
+		double reward()
+		{
+			double survived = state.over ? 0.5*(state.turn - root.turn)/(double)ROLLOUT_TURNS : 1;
+
+			return Math.min(survived, 1) + SCORE_WEIGHT*(state.score - root.score);
+
+		}// reward
+
+	}// Search
+
+	/**
+	main
+	Plays games headless with the bot and reports how they went and
+	how many turns the searches simulated per second
+	*/
+	public static void main(String[] args)
+	{
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : 3;
+		int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+		int trees = (args.length > 2) ? Integer.parseInt(args[2]) : Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+
+		System.out.printf("%d trees, %d iterations a move, %d cores%n",
+				trees, iterations, Runtime.getRuntime().availableProcessors());
+
+		Bot bot = new Bot(iterations, trees, 42);
+		long moves = 0;
+		long start = System.nanoTime();
+
+		for (int game = 0; game < games; game++)
+		{
+			Engine engine = new Engine(new Config(), game);
+
+			while (!engine.over && engine.turn < MAX_TURNS)
+			{
+				engine.play(bot.choose(engine));
+				moves++;
+			}
+
+			System.out.printf("game %d: %d turns, score %d%n", game, engine.turn, engine.score);
+		}
+
+		double elapsed = (System.nanoTime() - start)/1e9;
+
+		System.out.printf("%d moves in %.1f s, %.1f moves/s, %.0f simulated turns/s%n",
+				moves, elapsed, moves/elapsed, bot.simulated/elapsed);
+
+	}// main
+
+}// Bot
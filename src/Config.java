@@ -0,0 +1,283 @@
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+Config
+Settings of a game: board size, spawning, reload time and how much
+of the board the window shows, or where to serve games from when run
+as a server or on the terminal. Read from a properties file and from
+command-line options, the latter taking precedence. Options are
+written as --name=value or --name value, where the name is the
+property's with dashes for dots, e.g. --spawn-frequency=3. Switches
+such as --terminal may be given without a value
+*/
+public class Config
+{
+	static final int MIN_SIZE = 21;
+	static final int MAX_SIZE = 4096;
+	static final int MAX_RELOAD_TIME = 1000; // turns, far more than a game can wait out
+	static final List<String> SWITCHES = Arrays.asList("terminal", "autoplay", "sequential"); // options that need no value
+
+	static final String USAGE =
+			"options: --config=FILE --rows=N --cols=N --view-rows=N --view-cols=N\n" +
+			"         --spawn-frequency=N --spawn-quantity=N --reload-time=N --font-size=N\n" +
+			"         --seed=N --port=N --socket=PATH --terminal --autoplay --bot-iterations=N\n" +
+			"         --leaderboard=FILE --replays=DIR --sequential\n" +
+			"with --port or --socket games are served over the network instead of shown\n" +
+			"with --terminal the game is played in the terminal it was started from\n" +
+			"with --autoplay a bot plays the games in the window, searching --bot-iterations rollouts a move\n" +
+			"with --sequential large swarms are moved on one thread rather than on every core\n" +
+			"finished games are ranked in the --leaderboard file, or only in memory if it is empty or another process has it\n" +
+			"every game is recorded in a file of its own in the --replays directory, unless it is empty\n" +
+			"rows and cols range from " + MIN_SIZE + " to " + MAX_SIZE + ", reload-time from 0 to " + MAX_RELOAD_TIME;
+
+	int rows = 21;
+	int cols = 21;
+	int spawnFrequency = 2;
+	int spawnQuantity = 1;
+	int reloadTime = 3;
+	int fontSize = 28;
+	int viewRows = 21; // board rows shown in the window
+	int viewCols = 21; // board columns shown in the window
+	long seed = System.nanoTime(); // seeds the games of a session
+	int port = 0; // TCP port to serve games on, 0 for none
+	String socket = null; // Unix socket to serve games on, or null
+	boolean terminal = false; // play on the terminal rather than in a window
+	boolean autoplay = false; // let the bot play the games in the window
+	int botIterations = Bot.DEFAULT_ITERATIONS; // rollouts the bot searches for each move
+	String leaderboard = "leaderboard.log"; // file of the best runs, or empty to keep them in memory
+	String replays = "replays"; // directory games are recorded in, or empty not to record them
+	boolean sequential = false; // move large swarms on one thread, not on the common pool
+
+	/**
+	parse
+	Builds the configuration given by the command-line arguments,
+	reading the file named by --config first if there is one.
+	Throws IllegalArgumentException for unknown or invalid options
+	*/
+	static Config parse(String[] args) throws IOException
+	{
+		Properties options = new Properties();
+
+		for (int i = 0; i < args.length; i++)
+		{
+			if (!args[i].startsWith("--"))
+				throw new IllegalArgumentException("unexpected argument " + args[i]);
+
+			String name = args[i].substring(2);
+			String value;
+
+			if (name.contains("="))
+			{
+				value = name.substring(name.indexOf('=') + 1);
+				name = name.substring(0, name.indexOf('='));
+			}
+			else if (SWITCHES.contains(name))
+				value = "true";
+			else if (i + 1 < args.length)
+				value = args[++i];
+			else
+				throw new IllegalArgumentException("missing value for --" + name);
+
+			options.setProperty(name.replace('-', '.'), value);
+		}
+
+		Properties settings = new Properties();
+
+		if (options.containsKey("config"))
+		{
+			try (Reader file = new FileReader(options.getProperty("config")))
+			{
+				settings.load(file);
+			}
+
+			options.remove("config");
+		}
+
+		settings.putAll(options);
+
+		Config config = new Config();
+		config.load(settings);
+		return config;
+
+	}// parse
+
+	/**
+	load
+	Applies the given settings over the current values and checks
+	that the result is playable
+	*/
+	void load(Properties settings)
+	{
+		for (String name : settings.stringPropertyNames())
+		{
+			if (name.equals("seed"))
+			{
+				seed = seed(settings.getProperty(name));
+				continue;
+			}
+
+			if (name.equals("socket"))
+			{
+				socket = settings.getProperty(name).trim();
+				continue;
+			}
+
+			if (name.equals("leaderboard"))
+			{
+				leaderboard = settings.getProperty(name).trim();
+				continue;
+			}
+
+			if (name.equals("replays"))
+			{
+				replays = settings.getProperty(name).trim();
+				continue;
+			}
+
+			if (name.equals("terminal"))
+			{
+				terminal = flag(name, settings.getProperty(name));
+				continue;
+			}
+
+			if (name.equals("autoplay"))
+			{
+				autoplay = flag(name, settings.getProperty(name));
+				continue;
+			}
+
+			if (name.equals("sequential"))
+			{
+				sequential = flag(name, settings.getProperty(name));
+				continue;
+			}
+
+			int value = number(name, settings.getProperty(name));
+
+			switch (name)
+			{
+				case "rows":
+					rows = value;
+					break;
+
+				case "cols":
+					cols = value;
+					break;
+
+				case "view.rows":
+					viewRows = value;
+					break;
+
+				case "view.cols":
+					viewCols = value;
+					break;
+
+				case "spawn.frequency":
+					spawnFrequency = value;
+					break;
+
+				case "spawn.quantity":
+					spawnQuantity = value;
+					break;
+
+				case "reload.time":
+					reloadTime = value;
+					break;
+
+				case "font.size":
+					fontSize = value;
+					break;
+
+				case "port":
+					port = value;
+					break;
+
+				case "bot.iterations":
+					botIterations = value;
+					break;
+
+				default:
+					throw new IllegalArgumentException("unknown option " + name);
+			}
+		}
+
+		check("rows", rows, MIN_SIZE, MAX_SIZE);
+		check("cols", cols, MIN_SIZE, MAX_SIZE);
+		check("view.rows", viewRows, MIN_SIZE, rows);
+		check("view.cols", viewCols, MIN_SIZE, cols);
+		check("spawn.frequency", spawnFrequency, 1, Integer.MAX_VALUE);
+		check("spawn.quantity", spawnQuantity, 0, Integer.MAX_VALUE);
+		check("reload.time", reloadTime, 0, MAX_RELOAD_TIME);
+		check("font.size", fontSize, 1, Integer.MAX_VALUE);
+		check("port", port, 0, 65535);
+		check("bot.iterations", botIterations, 1, Integer.MAX_VALUE);
+
+		if (socket != null && socket.isEmpty())
+			throw new IllegalArgumentException("socket must be a file path");
+
+	}// load
+
+	/**
+	serving
+	Whether games are to be served over the network
+	*/
+	boolean serving()
+	{
+		return port != 0 || socket != null;
+
+	}// serving
+
+	static int number(String name, String value)
+	{
+		try
+		{
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException(name + " must be a whole number, not " + value);
+		}
+
+	}// number
+
+	static long seed(String value)
+	{
+		try
+		{
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("seed must be a whole number, not " + value);
+		}
+
+	}// seed
+
+	static boolean flag(String name, String value)
+	{
+		switch (value.trim())
+		{
+			case "true":
+				return true;
+
+			case "false":
+				return false;
+		}
+
+		throw new IllegalArgumentException(name + " must be true or false, not " + value);
+
+	}// flag
+
+	static void check(String name, int value, int min, int max)
+	{
+		if (value < min || value > max)
+			throw new IllegalArgumentException(name + " must be between " + min + " and " + max + ", not " + value);
+
+	}// check
+
+}// Config
@@ -0,0 +1,168 @@
+import java.util.concurrent.ForkJoinPool;
+
+/**
+Determinism
+Checks that a game plays out the same however its spiders are moved.
+Seeded games of random commands are played side by side: one sweeping
+the swarm on one thread, others on the common pool and on pools of
+their own with other parallelism, and a copy of the first with its
+swarm turned back to front before every turn. After every command
+they must agree on the command and on Engine.hash. The large boards
+spawn enough spiders to be swept band by band. The digest printed at
+the end hashes every game, so runs with a different common pool, e.g.
+-Djava.util.concurrent.ForkJoinPool.common.parallelism=4, can be
+compared as well. Exits with 1 on the first disagreement.
+Run with: java -cp target/classes Determinism [games] [turns]
+*/
+public class Determinism
+{
+	static final int DEFAULT_GAMES = 12;
+	static final int DEFAULT_TURNS = 200; // turns after which a game is called off
+	static final int[] PARALLELISM = {1, 2, 4}; // of the pools besides the common one
+
+	/**
+	config
+	Settings of the given game: the default board, a larger one with
+	a few hundred spiders, and one with thousands, enough to be swept
+	band by band
+	*/
+	static Config config(int game)
+	{
+		Config config = new Config();
+
+		switch (game%3)
+		{
+			case 1:
+				config.rows = 256;
+				config.cols = 200;
+				config.spawnFrequency = 1;
+				config.spawnQuantity = 20;
+				break;
+
+			case 2:
+				config.rows = 512;
+				config.cols = 448;
+				config.spawnFrequency = 1;
+				config.spawnQuantity = 150;
+				break;
+
+			default:
+				break;
+		}
+
+		config.sequential = true;
+
+		return config;
+
+	}// config
+
+	/**
+	reverse
+	Turns the order the swarm keeps its spiders in back to front,
+	pointing their cells at their new indices
+	*/
+	static void reverse(Engine engine)
+	{
+		Swarm swarm = engine.swarm;
+
+		for (int i = 0, j = swarm.size - 1; i < j; i++, j--)
+		{
+			int row = swarm.rows[i];
+			int col = swarm.cols[i];
+
+			swarm.rows[i] = swarm.rows[j];
+			swarm.cols[i] = swarm.cols[j];
+			swarm.rows[j] = row;
+			swarm.cols[j] = col;
+		}
+
+		for (int s = 0; s < swarm.size; s++)
+			engine.occupant[engine.cell(swarm.rows[s], swarm.cols[s])] = s;
+
+	}// reverse
+
+	/**
+	main
+	Plays the games and reports each one's turns, largest swarm and
+	final hash, then the digest of them all
+	*/
+	public static void main(String[] args)
+	{
+		int games = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_GAMES;
+		int maxTurns = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_TURNS;
+
+		ForkJoinPool[] pools = new ForkJoinPool[PARALLELISM.length];
+
+		for (int i = 0; i < pools.length; i++)
+			pools[i] = new ForkJoinPool(PARALLELISM[i]);
+
+		String[] names = new String[pools.length + 2];
+		names[0] = "common pool of " + ForkJoinPool.getCommonPoolParallelism();
+
+		for (int i = 0; i < pools.length; i++)
+			names[i + 1] = "pool of " + PARALLELISM[i];
+
+		names[names.length - 1] = "reversed swarm";
+
+		long digest = 0;
+		long turns = 0;
+
+		for (int game = 0; game < games; game++)
+		{
+			Engine sequential = new Engine(config(game), game);
+			Engine[] others = new Engine[names.length];
+
+			for (int i = 0; i < others.length - 1; i++)
+			{
+				others[i] = new Engine(sequential);
+				others[i].pool = (i == 0) ? ForkJoinPool.commonPool() : pools[i - 1];
+			}
+
+			SplitMix dice = new SplitMix(game);
+			int spiders = 0;
+
+			while (!sequential.over && sequential.turn < maxTurns)
+			{
+				// the reversed copy is made anew from the sequential game
+				others[others.length - 1] = new Engine(sequential);
+				reverse(others[others.length - 1]);
+
+				int command = dice.nextInt(Engine.COMMANDS);
+				boolean played = sequential.play(command);
+				long hash = sequential.hash();
+
+				sequential.clearDirty();
+
+				for (int i = 0; i < others.length; i++)
+				{
+					if (others[i].play(command) != played || others[i].hash() != hash)
+					{
+						System.out.printf("game %d, turn %d: the %s plays command %d differently%n",
+								game, sequential.turn, names[i], command);
+						System.exit(1);
+					}
+
+					others[i].clearDirty();
+				}
+
+				spiders = Math.max(spiders, sequential.swarm.size);
+			}
+
+			long hash = sequential.hash();
+			digest = Engine.mix(digest, hash);
+			turns += sequential.turn;
+
+			System.out.printf("game %d: %dx%d, %d turns, %d spiders at most%s, hash %016x%n",
+					game, sequential.rows, sequential.cols, sequential.turn, spiders,
+					(spiders >= Engine.PARALLEL_SPIDERS) ? " in bands" : "", hash);
+		}
+
+		for (ForkJoinPool pool : pools)
+			pool.shutdown();
+
+		System.out.printf("%d games, %d turns, all %d ways agree, digest %016x%n",
+				games, turns, names.length + 1, digest);
+
+	}// main
+
+}// Determinism
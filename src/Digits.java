@@ -0,0 +1,43 @@
+/**
+Digits
+Numbers written straight into the text of a screen, fixed width and
+with leading zeros, for the score and the time shown while playing
+and on the results screen. Nothing is allocated, so a frame can show
+numbers without making garbage
+*/
+public class Digits
+{
+	static final int TIME_WIDTH = 9; // mm:ss:mmm
+
+	/**
+	write
+	Writes the last width digits of a value that is not negative,
+	starting at the given offset
+	*/
+	static void write(char[] text, int offset, int width, long value)
+	{
+		for (int i = offset + width - 1; i >= offset; i--)
+		{
+			text[i] = (char)('0' + value%10);
+			value /= 10;
+		}
+
+	}// write
+
+	/**
+	time
+	Writes a duration in milliseconds as minutes, seconds and
+	milliseconds, mm:ss:mmm, starting at the given offset. Hours
+	are left out
+	*/
+	static void time(char[] text, int offset, long milliseconds)
+	{
+		write(text, offset, 2, (milliseconds/(1000*60))%60);
+		text[offset + 2] = ':';
+		write(text, offset + 3, 2, (milliseconds/1000)%60);
+		text[offset + 5] = ':';
+		write(text, offset + 6, 3, milliseconds%1000);
+
+	}// time
+
+}// Digits
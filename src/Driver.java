@@ -1,7 +1,25 @@
+import java.io.IOException;
+
 public class Driver
 {
-	public static void main(String[] args)
+	public static void main(String[] args) throws IOException
 	{		
-		new Game();
+		try
+		{
+			Config config = Config.parse(args);
+
+			if (config.serving())
+				Server.open(config).run();
+			else if (config.terminal)
+				TerminalGame.playOnTerminal(config);
+			else
+				new Game(config);
+		}
+		catch (IllegalArgumentException e)
+		{
+			System.err.println(e.getMessage());
+			System.err.println(Config.USAGE);
+			System.exit(1);
+		}
 	}
 }
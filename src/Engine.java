@@ -0,0 +1,1780 @@
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+Engine
+Headless game state for A Song of Birch and Silk. Holds the board,
+the player, the arrow and the spiders and advances turns from player
+commands. Nothing in here touches AWT or Swing, so a front-end only
+has to translate its input into commands and draw the board.
+*/
+public class Engine
+{
+	static final int UNREACHED = Integer.MAX_VALUE;
+	static final int NOT_EDGE = -1;
+	static final int NO_TARGET = -1;
+	static final int PARALLEL_SPIDERS = 8192; // swarm size from which the pool moves the spiders
+	static final int BAND_ROWS = 64; // rows of a band of spiders swept together, a multiple of 64
+
+	// How a spider's move was settled
+	static final byte UNSETTLED = 0; // aims at another spider's cell
+	static final byte MOVES = 1;
+	static final byte STAYS = 2;
+	static final byte LOST = 3; // stays, having lost its claim
+	static final byte ONTO_FLOOR = 4; // aims at a floor cell, its claim not checked yet
+
+	// Cell codes of the board, as code reads them off its bits
+	static final byte FLOOR = 0;
+	static final byte PLAYER = 1;
+	static final byte SPIDER = 2;
+
+	// Characters drawn for each cell code
+	static final char[] GLYPHS = {' ', '@', 'm'};
+
+	// Commands
+	static final int WAIT = 0;
+	static final int MOVE_UP = 1;
+	static final int MOVE_UP_RIGHT = 2;
+	static final int MOVE_RIGHT = 3;
+	static final int MOVE_DOWN_RIGHT = 4;
+	static final int MOVE_DOWN = 5;
+	static final int MOVE_DOWN_LEFT = 6;
+	static final int MOVE_LEFT = 7;
+	static final int MOVE_UP_LEFT = 8;
+	static final int SHOOT_UP = 9;
+	static final int SHOOT_RIGHT = 10;
+	static final int SHOOT_DOWN = 11;
+	static final int SHOOT_LEFT = 12;
+	static final int COMMANDS = 13;
+
+	// Row and column offsets of each command
+	static final int[] DROW = {0, -1, -1, 0, 1, 1, 1, 0, -1, -1, 0, 1, 0};
+	static final int[] DCOL = {0, 0, 1, 1, 1, 0, -1, -1, -1, 0, 1, 0, -1};
+
+	// Settings
+	final int rows;
+	final int cols;
+	final int spawnFrequency;
+	final int spawnQuantity;
+	final int reloadTime;
+	final long seed;
+
+	// Dynamic Game Variables
+	int turn;
+	int score;
+	boolean over;
+
+	// Spiders moved, spawned and killed in the turn being played,
+	// the kills of an arrow counting towards the turn it ends
+	int turnMoves, turnSpawns, turnKills;
+
+	GameMetrics metrics; // told about every turn, or null
+
+	// Global Game Variables
+	SplitMix random;
+	Player player;
+	Arrow arrow;
+	boolean arrowFlying;
+	Swarm swarm;
+	int occupant[]; // swarm index of the spider on each spider cell
+
+	// The board, one bit a cell, set for the floor: rows of 64 cells
+	// to a word, and the same bits turned on their side, column by
+	// column, for the arrows. The one taken cell that is not a
+	// spider's is the player's
+	int words; // words in a row
+	long[] floorBits;
+	int columnWords; // words in a column
+	long[] floorColumns;
+
+	// Free cells on the edge of the board, one bit each by edgeNumber,
+	// so the one a spawn picks does not hang on the order cells were
+	// taken and freed in
+	long[] freeEdgeBits;
+	int freeEdges;
+
+	// Cells changed since the last call to clearDirty, one bit each
+	// laid out row by row like floorBits
+	int[] dirty;
+	int dirtyCount;
+	long[] dirtyBits;
+
+	// Steps from every cell to the player, computed once per turn.
+	// Each search counts up from a new origin above every value left
+	// by the previous ones, so cells below origin were not reached
+	int[] distance;
+	int origin;
+	int farthest;
+
+	// The search works on rows of bits laid out like floorBits
+	long[] reached;   // cells the search has reached
+	long[] front;     // cells reached in the last step of the search
+	long[] candidate; // neighbours of front being gathered
+	int[] frontWords; // words of front that have bits set
+	int[] touched;    // words of candidate that have bits set
+
+	// Moves of the turn being settled
+	int[] claim; // index of the spider each cell is claimed by, or Swarm.NONE
+	int[] chain; // spiders waiting on the ones ahead of them
+	ForkJoinPool pool; // sweeps large swarms band by band, or null to do it on one thread
+	Sweep sweep;
+
+	/**
+	Engine
+	Sets up a game with the given settings whose spawns are rolled
+	from the given seed. The same seed and commands always play out
+	the same game
+	*/
+	Engine(Config config, long seed)
+	{
+		rows = config.rows;
+		cols = config.cols;
+		spawnFrequency = config.spawnFrequency;
+		spawnQuantity = config.spawnQuantity;
+		reloadTime = config.reloadTime;
+		this.seed = seed;
+		pool = config.sequential ? null : ForkJoinPool.commonPool();
+
+		setup();
+
+	}// Engine constructor
+
+	Engine(Config config)
+	{
+		this(config, config.seed);
+
+	}// Engine config constructor
+
+	Engine()
+	{
+		this(new Config());
+
+	}// Engine default constructor
+
+	/**
+	Engine
+	Copy of the given game, to be played on from the same state with
+	the same rolls to come. Metrics are not copied
+	*/
+	Engine(Engine original)
+	{
+		rows = original.rows;
+		cols = original.cols;
+		spawnFrequency = original.spawnFrequency;
+		spawnQuantity = original.spawnQuantity;
+		reloadTime = original.reloadTime;
+		seed = original.seed;
+		pool = original.pool;
+
+		setup();
+		load(original);
+
+	}// Engine copy constructor
+
+	/**
+	load
+	Makes this game a copy of the given one, which has the same
+	settings, reusing this game's arrays and pieces so that a search
+	can go back to a saved state over and over without allocating.
+	Only the bits of the board are copied; the spiders' cells are
+	pointed at their indices again from the swarm. The dirty cells
+	are forgotten and the distance field is left to the next turn's
+	search, which never reads a stale one
+	*/
+	void load(Engine from)
+	{
+		turn = from.turn;
+		score = from.score;
+		over = from.over;
+		turnMoves = from.turnMoves;
+		turnSpawns = from.turnSpawns;
+		turnKills = from.turnKills;
+		random.state = from.random.state;
+
+		System.arraycopy(from.freeEdgeBits, 0, freeEdgeBits, 0, freeEdgeBits.length);
+		System.arraycopy(from.floorBits, 0, floorBits, 0, floorBits.length);
+		System.arraycopy(from.floorColumns, 0, floorColumns, 0, floorColumns.length);
+		freeEdges = from.freeEdges;
+		clearDirty();
+
+		player.copy(from.player);
+		player.turnsToReady = from.player.turnsToReady;
+
+		arrow.load(from.arrow);
+		arrowFlying = from.arrowFlying;
+
+		swarm.load(from.swarm);
+
+		for (int s = 0; s < swarm.size; s++)
+			occupant[cell(swarm.rows[s], swarm.cols[s])] = s;
+
+	}// load
+
+	/**
+	copy
+	Copy of this game, see the copy constructor
+	*/
+	Engine copy()
+	{
+		return new Engine(this);
+
+	}// copy
+
+	/**
+	hash
+	Hash of everything the rest of the game hangs on: the board, a
+	word of floor bits at a time, the player and the arrow, the
+	counters and the rolls to come. Games in the same state hash the
+	same, whatever order their spiders are kept in
+	*/
+	long hash()
+	{
+		long h = 0;
+
+		for (long word : floorBits)
+			h = mix(h, word);
+
+		h = mix(h, turn);
+		h = mix(h, score);
+		h = mix(h, over ? 1 : 0);
+		h = mix(h, random.state);
+		h = mix(h, player.row);
+		h = mix(h, player.col);
+		h = mix(h, player.turnsToReady);
+
+		if (arrowFlying)
+		{
+			h = mix(h, arrow.row);
+			h = mix(h, arrow.col);
+			h = mix(h, arrow.moveRow);
+			h = mix(h, arrow.moveCol);
+			h = mix(h, arrow.nextHit);
+		}
+
+		return h ^ (h >>> 31);
+
+	}// hash
+
+	static long mix(long h, long value)
+	{
+		return (h ^ value)*SplitMix.GOLDEN_GAMMA;
+
+	}// mix
+
+	/**
+	outOfBounds
+	Checks if the given values for a row and column are
+	out of the bounds of the game board
+	*/
+	boolean outOfBounds(int r, int c)
+	{
+		return (r < 0 || rows <= r || c < 0 || cols <= c);
+
+	}// outOfBounds
+
+	/**
+	cell
+	Index of the given row and column in the board grid
+	*/
+	int cell(int r, int c)
+	{
+		return r*cols + c; // fits an int up to Config.MAX_SIZE
+
+	}// cell
+
+	/**
+	isFloor
+	Whether the given row and column are floor, free to step on
+	*/
+	boolean isFloor(int r, int c)
+	{
+		return (floorBits[r*words + (c >>> 6)] & (1L << c)) != 0;
+
+	}// isFloor
+
+	/**
+	code
+	Cell code of the given row and column
+	*/
+	byte code(int r, int c)
+	{
+		if (isFloor(r, c))
+			return FLOOR;
+
+		return (r == player.row && c == player.col) ? PLAYER : SPIDER;
+
+	}// code
+
+	/**
+	markDirty
+	Records that the given cell has to be redrawn
+	*/
+	void markDirty(int cell)
+	{
+		int r = cell/cols;
+
+		markDirty(r, cell - r*cols);
+
+	}// markDirty
+
+	void markDirty(int r, int c)
+	{
+		int w = r*words + (c >>> 6);
+		long bit = 1L << c;
+
+		if ((dirtyBits[w] & bit) != 0)
+			return;
+
+		dirtyBits[w] |= bit;
+
+		if (dirtyCount == dirty.length)
+			dirty = Arrays.copyOf(dirty, 2*dirty.length);
+
+		dirty[dirtyCount++] = cell(r, c);
+
+	}// markDirty row and column
+
+	/**
+	clearDirty
+	Forgets the cells changed so far, once they have been redrawn
+	*/
+	void clearDirty()
+	{
+		for (int i = 0; i < dirtyCount; i++)
+		{
+			int r = dirty[i]/cols;
+
+			dirtyBits[r*words + ((dirty[i] - r*cols) >>> 6)] = 0;
+		}
+
+		dirtyCount = 0;
+
+	}// clearDirty
+
+	/**
+	glyph
+	Character shown at the given row and column, including the
+	arrow while it is flying over the floor
+	*/
+	char glyph(int r, int c)
+	{
+		byte code = code(r, c);
+
+		if (code == FLOOR && arrowFlying && arrow.row == r && arrow.col == c)
+			return arrow.ascii;
+
+		return GLYPHS[code];
+
+	}// glyph
+
+	/**
+	setup
+	Initializes all dynamic game variables to their default values
+	*/
+	void setup()
+	{
+		// Tracking Variables
+		turn = 0;
+		score = 0;
+		over = false;
+		turnMoves = 0;
+		turnSpawns = 0;
+		turnKills = 0;
+		random = new SplitMix(seed);
+
+		// Board setup
+		occupant = new int[rows*cols];
+		dirty = new int[64];
+		dirtyCount = 0;
+		distance = new int[rows*cols];
+		origin = 0;
+		farthest = 0;
+		words = (cols + 63) >>> 6;
+		floorBits = new long[rows*words];
+		dirtyBits = new long[rows*words];
+		columnWords = (rows + 63) >>> 6;
+		floorColumns = new long[cols*columnWords];
+		reached = new long[rows*words];
+		front = new long[rows*words];
+		candidate = new long[rows*words];
+		frontWords = new int[rows*words];
+		touched = new int[rows*words];
+		claim = new int[rows*cols];
+		chain = new int[16];
+
+		Arrays.fill(claim, Swarm.NONE);
+
+		for (int r = 0; r < rows; r++)
+			for (int c = 0; c < cols; c++)
+			{
+				floorBits[r*words + (c >>> 6)] |= 1L << c;
+				floorColumns[c*columnWords + (r >>> 6)] |= 1L << r;
+			}
+
+		// Free edge cells
+		freeEdges = 2*cols + 2*(rows - 2);
+		freeEdgeBits = new long[(freeEdges + 63)/64];
+
+		for (int n = 0; n < freeEdges; n++)
+			freeEdgeBits[n >>> 6] |= 1L << n;
+
+		// Player Setup
+		player = new Player(rows/2, cols/2);
+
+		// Arrow
+		arrow = new Arrow();
+		arrowFlying = false;
+
+		// Enemies Setup
+		swarm = new Swarm();
+
+	}//setup
+
+	/**
+	edgeNumber
+	Numbers the cells on the edge of the board: top row, bottom row,
+	then the left and right columns without their corners.
+	Returns NOT_EDGE for the cells inside
+	*/
+	int edgeNumber(int r, int c)
+	{
+		if (r == 0)
+			return c;
+
+		if (r == rows - 1)
+			return cols + c;
+
+		if (c == 0)
+			return 2*cols + r - 1;
+
+		if (c == cols - 1)
+			return 2*cols + rows - 2 + r - 1;
+
+		return NOT_EDGE;
+
+	}// edgeNumber
+
+	/**
+	edgeCell
+	Cell of the given edge number, the inverse of edgeNumber
+	*/
+	int edgeCell(int n)
+	{
+		if (n < cols)
+			return cell(0, n);
+
+		if (n < 2*cols)
+			return cell(rows - 1, n - cols);
+
+		if (n < 2*cols + rows - 2)
+			return cell(n - 2*cols + 1, 0);
+
+		return cell(n - 2*cols - (rows - 2) + 1, cols - 1);
+
+	}// edgeCell
+
+	/**
+	setCell
+	Writes a cell code to the board, keeping the dirty cells and
+	the free edge cells up to date
+	*/
+	void setCell(int cell, byte code)
+	{
+		int r = cell/cols;
+		int c = cell - r*cols;
+		boolean wasFree = isFloor(r, c);
+		boolean isFree = (code == FLOOR);
+
+		markDirty(r, c);
+
+		if (wasFree == isFree)
+			return;
+
+		floorBits[r*words + (c >>> 6)] ^= 1L << c;
+		floorColumns[c*columnWords + (r >>> 6)] ^= 1L << r;
+
+		int n = edgeNumber(r, c);
+
+		if (n == NOT_EDGE)
+			return;
+
+		freeEdgeBits[n >>> 6] ^= 1L << n;
+		freeEdges += isFree ? 1 : -1;
+
+	}// setCell
+
+	/**
+	spawnSpider
+	Spawns one spider on a free cell picked at random, with equal
+	odds, among the four edges of the game map. Returns false if
+	the edges are full
+	*/
+	boolean spawnSpider()
+	{
+		if (freeEdges == 0)
+			return false;
+
+		int cell = edgeCell(nthFreeEdge(random.nextInt(freeEdges)));
+		addSpider(cell/cols, cell%cols);
+		turnSpawns++;
+
+		return true;
+
+	}// spawnSpider
+
+	/**
+	nthFreeEdge
+	Edge number of the free edge cell with the given rank, counting
+	from 0 in edge number order. Counts the free cells 64 at a time
+	*/
+	int nthFreeEdge(int rank)
+	{
+		int w = 0;
+
+		while (Long.bitCount(freeEdgeBits[w]) <= rank)
+			rank -= Long.bitCount(freeEdgeBits[w++]);
+
+		long bits = freeEdgeBits[w];
+
+		for (int i = 0; i < rank; i++)
+			bits &= bits - 1;
+
+		return 64*w + Long.numberOfTrailingZeros(bits);
+
+	}// nthFreeEdge
+
+	/**
+	addSpider
+	Puts a new spider on the given free cell and returns its index
+	*/
+	int addSpider(int r, int c)
+	{
+		int spider = swarm.add(r, c);
+
+		setCell(cell(r, c), SPIDER);
+		occupant[cell(r, c)] = spider;
+
+		return spider;
+
+	}// addSpider
+
+	/**
+	killSpider
+	Takes the spider on the given cell off the board and out of the
+	swarm, pointing the cell of the spider moved into its place at
+	its new index
+	*/
+	void killSpider(int cell)
+	{
+		int spider = occupant[cell];
+		int moved = swarm.remove(spider);
+
+		setCell(cell, FLOOR);
+
+		if (moved != Swarm.NONE)
+			occupant[cell(swarm.rows[spider], swarm.cols[spider])] = spider;
+
+	}// killSpider
+
+	/**
+	spiderAt
+	Index of the spider standing on the given row and column
+	*/
+	int spiderAt(int r, int c)
+	{
+		return occupant[cell(r, c)];
+
+	}// spiderAt
+
+	/**
+	computeDistances
+	Breadth-first search from the player over the floor, moving in
+	the eight directions. Spider cells get a distance but are not
+	searched through, so the field leads spiders around each other.
+	Each step grows the whole front at once, 64 cells to a word,
+	and only visits the words the front occupies. The search stops
+	once every spider has been reached, since a spider only ever
+	steps to a cell closer than itself
+	*/
+	void computeDistances()
+	{
+		if (farthest > Integer.MAX_VALUE - distance.length)
+		{
+			Arrays.fill(distance, 0);
+			farthest = 0;
+		}
+
+		Arrays.fill(reached, 0);
+
+		int d = farthest + 1;
+		int start = player.row*words + (player.col >>> 6);
+		int fronts = 1;
+		int spidersLeft = swarm.size;
+		long lastMask = (cols%64 == 0) ? -1L : (1L << cols) - 1;
+
+		origin = d;
+		distance[cell(player.row, player.col)] = d;
+		reached[start] = 1L << player.col;
+		front[start] = 1L << player.col;
+		frontWords[0] = start;
+
+		while (fronts > 0 && spidersLeft > 0)
+		{
+			d++;
+
+			// gather the neighbours of every front cell
+			int gathered = 0;
+
+			for (int i = 0; i < fronts; i++)
+			{
+				int w = frontWords[i];
+				int r = w/words;
+				int x = w - r*words;
+				long f = front[w];
+				long grown = f | (f << 1) | (f >>> 1);
+				long intoNext = f >>> 63; // column 63 grows into the next word
+				long intoPrevious = f << 63; // column 0 into the previous one
+
+				front[w] = 0;
+
+				for (int nr = Math.max(r - 1, 0); nr <= Math.min(r + 1, rows - 1); nr++)
+				{
+					int nw = nr*words + x;
+
+					gathered = gather(nw, grown, gathered);
+
+					if (intoNext != 0 && x + 1 < words)
+						gathered = gather(nw + 1, intoNext, gathered);
+
+					if (intoPrevious != 0 && x > 0)
+						gathered = gather(nw - 1, intoPrevious, gathered);
+				}
+			}
+
+			// keep the ones not reached before, and search on from the free ones
+			fronts = 0;
+
+			for (int i = 0; i < gathered; i++)
+			{
+				int w = touched[i];
+				long fresh = candidate[w] & ~reached[w];
+
+				candidate[w] = 0;
+
+				if (w%words == words - 1)
+					fresh &= lastMask;
+
+				if (fresh == 0)
+					continue;
+
+				reached[w] |= fresh;
+				spidersLeft -= Long.bitCount(fresh & ~floorBits[w]);
+
+				int base = (w/words)*cols + (w%words)*64;
+
+				for (long bits = fresh; bits != 0; bits &= bits - 1)
+					distance[base + Long.numberOfTrailingZeros(bits)] = d;
+
+				long next = fresh & floorBits[w];
+
+				if (next != 0)
+				{
+					front[w] = next;
+					frontWords[fronts++] = w;
+				}
+			}
+		}
+
+		farthest = d;
+
+	}// computeDistances
+
+	/**
+	gather
+	Adds cells to a word of candidate, listing the word in touched
+	the first time it gets any. Returns the new length of touched
+	*/
+	int gather(int w, long cells, int gathered)
+	{
+		if (candidate[w] == 0)
+			touched[gathered++] = w;
+
+		candidate[w] |= cells;
+		return gathered;
+
+	}// gather
+
+	/**
+	nextTaken
+	Position of the first cell that is not floor along a line of
+	floor bits, a row of floorBits or a column of floorColumns,
+	starting at the given position and going one way or the other.
+	Skips 64 floor cells at a time. Returns -1 if there is none
+	*/
+	static int nextTaken(long[] bits, int base, int length, int from, int step)
+	{
+		if (step > 0)
+		{
+			for (int i = from; i < length; i = (i | 63) + 1)
+			{
+				long taken = ~bits[base + (i >>> 6)] & (-1L << i);
+
+				if (taken != 0)
+				{
+					int found = (i & ~63) + Long.numberOfTrailingZeros(taken);
+					return (found < length) ? found : -1;
+				}
+			}
+		}
+		else
+		{
+			for (int i = Math.min(from, length - 1); i >= 0; i = (i & ~63) - 1)
+			{
+				long taken = ~bits[base + (i >>> 6)] & (-1L >>> (63 - (i & 63)));
+
+				if (taken != 0)
+					return (i & ~63) + 63 - Long.numberOfLeadingZeros(taken);
+			}
+		}
+
+		return -1;
+
+	}// nextTaken
+
+	/**
+	distanceTo
+	Steps from the given cell to the player found by the last
+	computeDistances, or UNREACHED
+	*/
+	int distanceTo(int cell)
+	{
+		return (distance[cell] < origin) ? UNREACHED : distance[cell] - origin;
+
+	}// distanceTo
+
+	/**
+	next
+	Advances the game to the next turn, reporting it to the metrics
+	if there are any
+	*/
+	void next()
+	{
+		if (metrics == null)
+			advance();
+		else
+		{
+			long allocated = metrics.allocated();
+			long start = System.nanoTime();
+
+			advance();
+			metrics.turn(this, start, allocated);
+		}
+
+		turnMoves = 0;
+		turnSpawns = 0;
+		turnKills = 0;
+
+	}// next
+
+	/**
+	advance
+	Plays out a turn by performing each turn's subroutines.
+	1 - the distance field to the player is computed
+	2 - every spider picks the cell it means to step to, and
+	    they all move at once
+	3 - if a spider spawn is due, one is performed
+	4 - the turn counter is updated
+	*/
+	void advance()
+	{
+		computeDistances();
+		moveSpiders();
+
+		if (turn%spawnFrequency == 0)
+		{
+			for (int i = 0; i < spawnQuantity; i++)
+				if (!spawnSpider())
+					break;
+		}
+
+		turn++;
+
+	}// advance
+
+	/**
+	moveSpiders
+	Has every spider aim, then settles the moves and makes them
+	together. Each target cell goes to one spider, the one closest
+	to the player and then the one on the lowest cell, whatever order
+	the spiders are gone through in. A spider stepping into the cell
+	of another moves if that one does; the distance to the player
+	falls along such a chain, so it always ends, on a free cell or a
+	spider that stays. Every mover is lifted before any is placed.
+	The swarm is sorted by row first, so each step is one sweep down
+	the board over the swarm's arrays. Large swarms are swept in
+	bands of rows, see Band
+	*/
+	void moveSpiders()
+	{
+		swarm.sortByRow(this.rows);
+
+		if (swarm.size >= PARALLEL_SPIDERS)
+		{
+			sweepInBands();
+			return;
+		}
+
+		int size = swarm.size;
+		int[] rows = swarm.rows;
+		int[] cols = swarm.cols;
+		int[] targets = swarm.targets;
+		byte[] settled = swarm.settled;
+
+		for (int s = 0; s < size; s++)
+			occupant[cell(rows[s], cols[s])] = s;
+
+		if (aim(0, size))
+			over = true;
+
+		settleFree(0, size);
+
+		for (int s = 0; s < size; s++)
+			if (settled[s] == UNSETTLED)
+				settle(s);
+
+		// lift every mover, then place them, freeing the claims
+		for (int s = 0; s < size; s++)
+		{
+			if (targets[s] != NO_TARGET && settled[s] != LOST)
+				claim[targets[s]] = Swarm.NONE;
+
+			if (settled[s] == MOVES)
+				setCell(cell(rows[s], cols[s]), FLOOR);
+		}
+
+		for (int s = 0; s < size; s++)
+			if (settled[s] == MOVES)
+				place(s);
+
+	}// moveSpiders
+
+	/**
+	place
+	Puts a spider that was lifted onto its target
+	*/
+	void place(int spider)
+	{
+		int target = swarm.targets[spider];
+		int r = target/cols;
+
+		swarm.rows[spider] = r;
+		swarm.cols[spider] = target - r*cols;
+		setCell(target, SPIDER);
+		occupant[target] = spider;
+		turnMoves++;
+
+	}// place
+
+	/**
+	aim
+	Has the spiders from one index to another aim and claim their
+	targets, keeping the claim of the spider that outranks the others
+	on each cell. Returns whether any of them reached the player.
+	The claims made are on the rows next to the spiders' own
+	*/
+	boolean aim(int from, int to)
+	{
+		int[] targets = swarm.targets;
+		boolean caught = false;
+
+		for (int s = from; s < to; s++)
+		{
+			if (aim(s))
+				caught = true;
+
+			int target = targets[s];
+
+			if (target == NO_TARGET)
+				continue;
+
+			int other = claim[target];
+
+			if (other == Swarm.NONE || outranks(s, other))
+				claim[target] = s;
+		}
+
+		return caught;
+
+	}// aim
+
+	/**
+	settleFree
+	Settles the moves of the spiders from one index to another that
+	do not hang on another spider's: those that lost their claim
+	stay, and those stepping onto a free cell move. Returns how many
+	are left to settle, each aiming at a cell it holds the claim on
+	*/
+	int settleFree(int from, int to)
+	{
+		int[] targets = swarm.targets;
+		byte[] settled = swarm.settled;
+		int left = 0;
+
+		for (int s = from; s < to; s++)
+		{
+			if (settled[s] == STAYS)
+				continue;
+
+			if (claim[targets[s]] != s)
+				settled[s] = LOST;
+			else if (settled[s] == ONTO_FLOOR)
+				settled[s] = MOVES;
+			else
+				left++;
+		}
+
+		return left;
+
+	}// settleFree
+
+	/**
+	sweepInBands
+	Moves a large swarm band by band, on the pool if there is one,
+	or one band after the other if not, to the same end. The few
+	moves a band cannot make on its own, from or onto the edge of
+	the board or into another band, are made in between, in order
+	*/
+	void sweepInBands()
+	{
+		if (sweep == null)
+			sweep = new Sweep();
+
+		Band[] bands = sweep.bands;
+
+		for (int i = 0; i < bands.length; i++)
+		{
+			bands[i].first = i*BAND_ROWS;
+			bands[i].from = swarm.rowStart(i*BAND_ROWS);
+			bands[i].to = swarm.rowStart(Math.min((i + 1)*BAND_ROWS, rows));
+		}
+
+		sweep.run(Band.AIM, 0);
+		sweep.run(Band.AIM, 1);
+		sweep.run(Band.SETTLE, Sweep.ALL);
+
+		for (Band band : bands)
+		{
+			if (band.caught)
+				over = true;
+
+			// chains, which can run from band to band
+			if (band.left > 0)
+				for (int s = band.from; s < band.to; s++)
+					if (swarm.settled[s] == UNSETTLED)
+						settle(s);
+		}
+
+		sweep.run(Band.LIFT, Sweep.ALL);
+
+		for (Band band : bands)
+			for (int i = 0; i < band.deferredCount; i++)
+				setCell(cell(swarm.rows[band.deferred[i]], swarm.cols[band.deferred[i]]), FLOOR);
+
+		sweep.run(Band.PLACE, Sweep.ALL);
+
+		for (Band band : bands)
+		{
+			for (int i = 0; i < band.deferredCount; i++)
+				place(band.deferred[i]);
+
+			// the band's changed cells go after those changed before
+			if (dirtyCount + band.dirtyCount > dirty.length)
+				dirty = Arrays.copyOf(dirty, Math.max(2*dirty.length, dirtyCount + band.dirtyCount));
+
+			System.arraycopy(band.dirty, 0, dirty, dirtyCount, band.dirtyCount);
+			dirtyCount += band.dirtyCount;
+			turnMoves += band.moves;
+		}
+
+	}// sweepInBands
+
+	/**
+	Band
+	The spiders on a band of BAND_ROWS rows, a tile of the board that
+	is swept while the other bands are. Bands start on a multiple of
+	64 rows, so the words of the bitsets a band changes, row by row or
+	column by column, are its own. A spider only claims cells on its
+	own row and the ones next to it, so bands two apart never claim
+	the same cell: the even bands aim together, then the odd ones.
+	Since the claim kept on a cell is the same whichever order the
+	claims come in, the moves are those of a single thread. A band
+	lifts and places its own spiders within its rows and away from
+	the edge, and leaves the others to be done in order after it
+	*/
+	@SuppressWarnings("serial")
+	class Band extends RecursiveAction
+	{
+		// Steps of a sweep
+		static final int AIM = 0;
+		static final int SETTLE = 1;
+		static final int LIFT = 2;
+		static final int PLACE = 3;
+
+		int first; // row the band starts on
+		int from, to; // indices of its spiders, sorted by row
+		int step;
+		boolean caught; // whether a spider reached the player
+		int left; // spiders left to settle along chains
+		int moves;
+
+		int[] deferred; // spiders left to lift or place in order
+		int deferredCount;
+
+		int[] dirty; // cells changed by the band
+		int dirtyCount;
+
+		Band()
+		{
+			deferred = new int[16];
+			dirty = new int[64];
+
+		}// Band constructor
+
+		protected void compute()
+		{
+			switch (step)
+			{
+				case AIM:
+					for (int s = from; s < to; s++)
+						occupant[cell(swarm.rows[s], swarm.cols[s])] = s;
+
+					caught = aim(from, to);
+					break;
+
+				case SETTLE:
+					left = settleFree(from, to);
+					break;
+
+				case LIFT:
+					lift();
+					break;
+
+				case PLACE:
+					place();
+					break;
+			}
+
+		}// compute
+
+		/**
+		lift
+		Frees the claims the band's spiders hold and lifts its movers
+		*/
+		void lift()
+		{
+			int[] targets = swarm.targets;
+			byte[] settled = swarm.settled;
+
+			deferredCount = 0;
+			dirtyCount = 0;
+			moves = 0;
+
+			for (int s = from; s < to; s++)
+			{
+				if (targets[s] != NO_TARGET && settled[s] != LOST)
+					claim[targets[s]] = Swarm.NONE;
+
+				if (settled[s] != MOVES)
+					continue;
+
+				int r = swarm.rows[s];
+				int c = swarm.cols[s];
+
+				if (edgeNumber(r, c) == NOT_EDGE)
+					flip(r, c);
+				else
+					defer(s);
+			}
+
+		}// lift
+
+		/**
+		place
+		Places the band's movers whose targets are within its rows
+		*/
+		void place()
+		{
+			int[] targets = swarm.targets;
+			byte[] settled = swarm.settled;
+
+			deferredCount = 0;
+
+			for (int s = from; s < to; s++)
+			{
+				if (settled[s] != MOVES)
+					continue;
+
+				int r = targets[s]/cols;
+				int c = targets[s] - r*cols;
+
+				if (r < first || r >= first + BAND_ROWS || edgeNumber(r, c) != NOT_EDGE)
+				{
+					defer(s);
+					continue;
+				}
+
+				swarm.rows[s] = r;
+				swarm.cols[s] = c;
+				flip(r, c);
+				occupant[targets[s]] = s;
+				moves++;
+			}
+
+		}// place
+
+		/**
+		flip
+		Turns a cell inside the board and the band's rows from floor
+		to a spider or back, keeping the bitsets up to date the way
+		setCell does, and marks it dirty in the band's own list
+		*/
+		void flip(int r, int c)
+		{
+			int w = r*words + (c >>> 6);
+			long bit = 1L << c;
+
+			floorBits[w] ^= bit;
+			floorColumns[c*columnWords + (r >>> 6)] ^= 1L << r;
+
+			if ((dirtyBits[w] & bit) != 0)
+				return;
+
+			dirtyBits[w] |= bit;
+
+			if (dirtyCount == dirty.length)
+				dirty = Arrays.copyOf(dirty, 2*dirtyCount);
+
+			dirty[dirtyCount++] = r*cols + c;
+
+		}// flip
+
+		void defer(int spider)
+		{
+			if (deferredCount == deferred.length)
+				deferred = Arrays.copyOf(deferred, 2*deferredCount);
+
+			deferred[deferredCount++] = spider;
+
+		}// defer
+
+	}// Band
+
+	/**
+	Sweep
+	Runs a step of every band, or of every other band, on the pool
+	if there is one and in order if not. Kept and reused from turn
+	to turn, along with its bands
+	*/
+	@SuppressWarnings("serial")
+	class Sweep extends RecursiveAction
+	{
+		static final int ALL = -1; // parity running every band
+
+		Band[] bands;
+		int step;
+		int parity; // of the bands to run, or ALL
+
+		Sweep()
+		{
+			bands = new Band[(rows + BAND_ROWS - 1)/BAND_ROWS];
+
+			for (int i = 0; i < bands.length; i++)
+				bands[i] = new Band();
+
+		}// Sweep constructor
+
+		void run(int step, int parity)
+		{
+			this.step = step;
+			this.parity = parity;
+
+			if (pool == null)
+				compute();
+			else
+			{
+				reinitialize();
+				pool.invoke(this);
+			}
+
+		}// run
+
+		protected void compute()
+		{
+			int first = (parity == ALL) ? 0 : parity;
+			int stride = (parity == ALL) ? 1 : 2;
+
+			for (int i = first; i < bands.length; i += stride)
+			{
+				bands[i].step = step;
+
+				if (pool == null)
+					bands[i].compute();
+				else
+				{
+					bands[i].reinitialize();
+					bands[i].fork();
+				}
+			}
+
+			if (pool != null)
+				for (int i = first; i < bands.length; i += stride)
+					bands[i].join();
+
+		}// compute
+
+	}// Sweep
+
+	/**
+	aim
+	Picks the cell a spider steps to: the free neighbouring cell
+	closest to the player according to the distance field, preferring
+	the one nearest in a straight line when several are as close. If
+	no free neighbour is closer than the spider already is, it aims
+	at the closest neighbouring spider instead, to step into its cell
+	if that one moves on. Aims at nothing if no neighbour is closer.
+	Returns whether the player is in reach, which ends the game
+	*/
+	boolean aim(int spider)
+	{
+		int row = swarm.rows[spider];
+		int col = swarm.cols[spider];
+		int target = NO_TARGET;
+
+		swarm.targets[spider] = NO_TARGET;
+		swarm.settled[spider] = STAYS;
+
+		int rDist = Math.abs(player.row - row);
+		int cDist = Math.abs(player.col - col);
+
+		if (rDist <= 1 && cDist <= 1 )
+			return true;
+
+		boolean free = false; // whether the target is floor
+		int own = distanceTo(cell(row, col));
+		int bestDistance = own;
+		int bestSpread = Integer.MAX_VALUE;
+
+		for (int dir = MOVE_UP; dir <= MOVE_UP_LEFT; dir++)
+		{
+			int destRow = row + DROW[dir];
+			int destCol = col + DCOL[dir];
+
+			if (outOfBounds(destRow, destCol))
+				continue;
+
+			int dest = cell(destRow, destCol);
+			boolean floor = isFloor(destRow, destCol);
+
+			// the player is out of reach, so a taken cell is a spider's
+			if (free && !floor)
+				continue;
+
+			int d = distanceTo(dest);
+			int dr = player.row - destRow;
+			int dc = player.col - destCol;
+			int spread = dr*dr + dc*dc;
+
+			if (!free && floor && d < own)
+			{
+				// a free cell beats any spider's
+				free = true;
+				bestDistance = UNREACHED;
+			}
+
+			if (d < bestDistance || (d == bestDistance && spread < bestSpread && target != NO_TARGET))
+			{
+				target = dest;
+				bestDistance = d;
+				bestSpread = spread;
+			}
+		}
+
+		if (target != NO_TARGET)
+		{
+			swarm.targets[spider] = target;
+			swarm.settled[spider] = free ? ONTO_FLOOR : UNSETTLED;
+		}
+
+		return false;
+
+	}// aim
+
+	/**
+	outranks
+	Whether one spider's claim on a cell beats another's: it is
+	closer to the player, or as close and on a lower cell
+	*/
+	boolean outranks(int spider, int other)
+	{
+		int cell = cell(swarm.rows[spider], swarm.cols[spider]);
+		int otherCell = cell(swarm.rows[other], swarm.cols[other]);
+		int d = distanceTo(cell);
+		int otherDistance = distanceTo(otherCell);
+
+		if (d != otherDistance)
+			return d < otherDistance;
+
+		return cell < otherCell;
+
+	}// outranks
+
+	/**
+	settle
+	Decides whether a spider left by settleFree moves, holding the
+	claim on the cell of the spider ahead of it: it does if that one
+	does. Follows the chain of spiders ahead of it without recursing,
+	and settles them all on the way back
+	*/
+	void settle(int spider)
+	{
+		int[] targets = swarm.targets;
+		byte[] settled = swarm.settled;
+		int length = 0;
+
+		while (settled[spider] == UNSETTLED)
+		{
+			if (length == chain.length)
+				chain = Arrays.copyOf(chain, 2*length);
+
+			chain[length++] = spider;
+			spider = occupant[targets[spider]];
+		}
+
+		byte end = (settled[spider] == MOVES) ? MOVES : STAYS;
+
+		while (length > 0)
+			settled[chain[--length]] = end;
+
+	}// settle
+
+	/**
+	move
+	Moves the player by the given offsets and plays out the turn.
+	A flying arrow finishes its flight first. Returns false if the
+	destination is off the board or taken, without spending a turn
+	of its own
+	*/
+	boolean move(int drow, int dcol)
+	{
+		if (over)
+			return false;
+
+		return player.move(drow, dcol);
+
+	}// move
+
+	/**
+	shoot
+	Fires an arrow from the player's position in the given direction.
+	The arrow is left flying so a front-end can animate it with
+	stepArrow; the turn is played once it leaves the board.
+	Returns false if no arrow is ready
+	*/
+	boolean shoot(int aimRow, int aimCol)
+	{
+		if (over)
+			return false;
+
+		return player.shoot(aimRow, aimCol);
+
+	}// shoot
+
+	/**
+	stepArrow
+	Moves the flying arrow one cell. When the arrow leaves the board
+	the turn is played and false is returned
+	*/
+	boolean stepArrow()
+	{
+		if (!arrowFlying)
+			return false;
+
+		if (!arrow.move(arrow.moveRow, arrow.moveCol))
+			land();
+
+		return arrowFlying;
+
+	}// stepArrow
+
+	/**
+	completeArrow
+	Plays out the rest of the flying arrow's flight at once. The
+	hits were found when it was fired, so this takes as long as
+	the hits left, however long the path
+	*/
+	void completeArrow()
+	{
+		if (!arrowFlying)
+			return;
+
+		markDirty(cell(arrow.row, arrow.col));
+
+		while (arrow.nextHit < arrow.hitCount)
+			arrow.hit();
+
+		arrow.row = arrow.endRow;
+		arrow.col = arrow.endCol;
+		land();
+
+	}// completeArrow
+
+	/**
+	land
+	Ends the arrow's flight and plays the turn
+	*/
+	void land()
+	{
+		arrowFlying = false;
+		markDirty(cell(arrow.row, arrow.col));
+		next();
+
+	}// land
+
+	/**
+	canPlay
+	Whether the given command would be performed, checked the way
+	move and shoot check it, without playing it
+	*/
+	boolean canPlay(int command)
+	{
+		if (over)
+			return false;
+
+		if (command >= SHOOT_UP)
+			return player.turnsToReady == 0;
+
+		int r = player.row + DROW[command];
+		int c = player.col + DCOL[command];
+
+		return !outOfBounds(r, c) && code(r, c) != SPIDER;
+
+	}// canPlay
+
+	/**
+	play
+	Performs one command, including the whole flight of an arrow.
+	Returns false if the command could not be performed
+	*/
+	boolean play(int command)
+	{
+		if (command >= SHOOT_UP)
+		{
+			if (!shoot(DROW[command], DCOL[command]))
+				return false;
+
+			completeArrow();
+			return true;
+		}
+
+		return move(DROW[command], DCOL[command]);
+
+	}// play
+
+	/**
+	play
+	Performs commands from the stream until it runs out or the game
+	is over. Returns the number of turns played
+	*/
+	int play(PrimitiveIterator.OfInt commands)
+	{
+		int start = turn;
+
+		while (!over && commands.hasNext())
+			play(commands.nextInt());
+
+		return turn - start;
+
+	}// play
+
+
+	/** GAME TILES **/
+
+
+	class Piece
+	{
+		byte code;
+		char ascii;
+		int row;
+		int col;
+
+		Piece(byte code, int r, int c)
+		{
+			this.code = code;
+			ascii = GLYPHS[code];
+			row = r;
+			col = c;
+			placeOnBoard();
+		}
+
+		/**
+		Piece
+		Copy of a piece of another game, already on this game's board
+		*/
+		Piece(Piece original)
+		{
+			copy(original);
+		}
+
+		void copy(Piece original)
+		{
+			code = original.code;
+			ascii = original.ascii;
+			row = original.row;
+			col = original.col;
+		}
+
+		boolean moveTo(int r, int c)
+		{
+			if (outOfBounds(r, c))
+				return false;
+
+			liftFromBoard();
+			row = r;
+			col = c;
+			placeOnBoard();
+			return true;
+		}
+
+		void placeOnBoard()
+		{
+			setCell(cell(row, col), code);
+		}
+
+		void liftFromBoard()
+		{
+			setCell(cell(row, col), FLOOR);
+		}
+
+		public String toString()
+		{
+			return Character.toString(ascii);
+		}
+
+	}// Piece
+
+	class Player extends Piece
+	{
+		int turnsToReady;
+
+		Player(int r, int c)
+		{
+			super(PLAYER, r, c);
+
+			turnsToReady = 0;
+
+		}// Player constructor
+
+		boolean move(int drow, int dcol)
+		{
+			int destRow = row + drow;
+			int destCol = col + dcol;
+
+			if (outOfBounds(destRow, destCol))
+				return false;
+
+			// the arrow's turn comes first and can move a spider into the way
+			if (arrowFlying)
+			{
+				completeArrow();
+
+				if (over)
+					return false;
+			}
+
+			if (code(destRow, destCol) == SPIDER)
+				return false;
+
+			moveTo(destRow, destCol);
+
+			if (drow == 0 && dcol == 0)
+				turnsToReady = 0;
+			else
+				if (turnsToReady > 0)
+					turnsToReady--;
+
+			next();
+
+			return true;
+
+		}// move
+
+		boolean shoot(int aimRow, int aimCol)
+		{
+			if (turnsToReady > 0)
+				return false;
+
+			if (arrowFlying)
+				completeArrow();
+
+			if (over)
+				return false;
+
+			turnsToReady = reloadTime;
+
+			arrow.fly(aimRow, aimCol);
+
+			return true;
+
+		}// shoot
+
+	}// Player
+
+	/**
+	Arrow
+	Flies over the board without occupying it; glyph draws it
+	on top of the floor. One arrow is reused for every shot.
+	Nothing on the board moves while it flies, so its whole flight
+	is worked out when it is fired: the spiders it will hit, in
+	order, with the points each is worth, and where it will land.
+	Moving it then only has to check for the next hit
+	*/
+	class Arrow extends Piece
+	{
+		static final int MAX_SCORE = 999;
+
+		int moveRow, moveCol;
+		int endRow, endCol; // last cell on the board along the path
+
+		int[] hits; // cells of the spiders in the way, nearest first
+		int[] points; // points scored by each hit
+		int hitCount;
+		int nextHit; // first hit the arrow has not reached yet
+
+		Arrow()
+		{
+			super(FLOOR, player.row, player.col);
+
+			hits = new int[Math.max(rows, cols)];
+			points = new int[hits.length];
+
+		}// Arrow constructor
+
+		void placeOnBoard(){}
+		void liftFromBoard(){}
+
+		/**
+		load
+		Takes over the flight of an arrow of another game
+		*/
+		void load(Arrow from)
+		{
+			copy(from);
+			moveRow = from.moveRow;
+			moveCol = from.moveCol;
+			endRow = from.endRow;
+			endCol = from.endCol;
+			hitCount = from.hitCount;
+			nextHit = from.nextHit;
+
+			System.arraycopy(from.hits, 0, hits, 0, hitCount);
+			System.arraycopy(from.points, 0, points, 0, hitCount);
+
+		}// load
+
+		boolean move(int drow, int dcol)
+		{
+			if (row == endRow && col == endCol)
+				return false;
+
+			markDirty(cell(row, col));
+			row += drow;
+			col += dcol;
+			markDirty(cell(row, col));
+
+			if (nextHit < hitCount && hits[nextHit] == cell(row, col))
+				hit();
+
+			return true;
+
+		}// move
+
+		/**
+		hit
+		Kills the next spider in the arrow's way and scores it
+		*/
+		void hit()
+		{
+			int target = hits[nextHit];
+
+			killSpider(target);
+			score = Math.min(score + points[nextHit], MAX_SCORE);
+			nextHit++;
+			turnKills++;
+
+		}// hit
+
+		void fly(int dr, int dc)
+		{
+			row = player.row;
+			col = player.col;
+			ascii = (dc == 0) ? '!' : '-';
+			moveRow = dr;
+			moveCol = dc;
+			arrowFlying = true;
+
+			// steps until the next one would leave the board
+			int steps = Integer.MAX_VALUE;
+
+			if (dr != 0)
+				steps = Math.min(steps, (dr > 0) ? rows - 1 - row : row);
+
+			if (dc != 0)
+				steps = Math.min(steps, (dc > 0) ? cols - 1 - col : col);
+
+			if (steps == Integer.MAX_VALUE)
+				steps = 0;
+
+			endRow = row + steps*dr;
+			endCol = col + steps*dc;
+
+			// the player's own cell is behind the arrow, so every
+			// cell ahead that is not floor holds a spider
+			hitCount = 0;
+			nextHit = 0;
+
+			if (dr == 0 && dc != 0)
+			{
+				for (int c = col + dc; (c = nextTaken(floorBits, row*words, cols, c, dc)) != -1; c += dc)
+					addHit(cell(row, c));
+			}
+			else if (dc == 0 && dr != 0)
+			{
+				for (int r = row + dr; (r = nextTaken(floorColumns, col*columnWords, rows, r, dr)) != -1; r += dr)
+					addHit(cell(r, col));
+			}
+			else
+			{
+				for (int i = 1; i <= steps; i++)
+					if (!isFloor(row + i*dr, col + i*dc))
+						addHit(cell(row + i*dr, col + i*dc));
+			}
+
+		}// fly
+
+		/**
+		addHit
+		Adds a spider to the hits, worth twice the one before
+		*/
+		void addHit(int target)
+		{
+			hits[hitCount] = target;
+			points[hitCount] = (hitCount < 10) ? 1 << hitCount : MAX_SCORE;
+			hitCount++;
+
+		}// addHit
+
+	}// Arrow
+
+}// Engine
@@ -1,40 +1,102 @@
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.Insets;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.event.*;
-import java.text.DecimalFormat;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.*;
 
 public class Game
 {
+	/**
+	Console
+	Character screen painted from a glyph atlas: every character the
+	game prints is rasterized once, and a frame is drawn by copying
+	glyphs into a back buffer, only for the cells whose character
+	changed. Its size is given as the board view it has to hold, and
+	the grid of cells is that of an in-game screen of that view
+	*/
 	@SuppressWarnings("serial")
-	class Console extends JTextArea
+	class Console extends JComponent
 	{	
 		static final String DEFAULT_OUTPUT = "";
+		static final char FIRST_GLYPH = ' ';
+		static final char LAST_GLYPH = '~';
+		static final char MISSING_GLYPH = '?';
+		
+		int rows, cols; // board view the screen was sized for
+		int lines, columns; // character grid
+		int fontSize;
+		int cellWidth, cellHeight;
+		int margin;
+		
+		char[] cells; // characters on the grid, line by line
+		int[] dirty; // cells not yet painted since they changed
+		int dirtyCount;
+		boolean[] pending; // cells listed in dirty
+		
+		BufferedImage atlas; // every glyph, side by side
+		VolatileImage buffer; // the painted grid
 		
 		Console(int rows, int cols, int fontSize, KeyListener input, String output)
 		{
-			super(rows, cols);
+			this.rows = rows;
+			this.cols = cols;
+			this.fontSize = fontSize;
+			
+			lines = rows + 2;
+			columns = BoardFrame.width(cols) + 1;
+			margin = fontSize/2;
 			
-			int marginWidth = fontSize/2;
 			Font font = new Font("consolas", Font.PLAIN, fontSize);
+			FontMetrics metrics = getFontMetrics(font);
+			cellWidth = metrics.charWidth('m');
+			cellHeight = metrics.getHeight();
+			
+			atlas = new BufferedImage((LAST_GLYPH - FIRST_GLYPH + 1)*cellWidth, cellHeight, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = atlas.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			g.setFont(font);
+			g.setColor(Color.LIGHT_GRAY);
+			
+			for (char ch = FIRST_GLYPH; ch <= LAST_GLYPH; ch++)
+			{
+				int x = (ch - FIRST_GLYPH)*cellWidth;
+				
+				// centred, in case the font fell back to one that is not monospaced
+				g.setClip(x, 0, cellWidth, cellHeight);
+				g.drawString(String.valueOf(ch), x + (cellWidth - metrics.charWidth(ch))/2, metrics.getAscent());
+			}
+			
+			g.dispose();
 			
-			setFont(font);
-			setEditable(false);
-			setBackground(Color.BLACK);
-			setForeground(Color.LIGHT_GRAY);
-			setMargin(new Insets(marginWidth, marginWidth, marginWidth, marginWidth));
+			cells = new char[lines*columns];
+			Arrays.fill(cells, ' ');
+			dirty = new int[cells.length];
+			pending = new boolean[cells.length];
 			
-			setText(output);
+			setPreferredSize(new Dimension(columns*cellWidth + 2*margin, lines*cellHeight + 2*margin));
+			setOpaque(true);
+			setFocusable(true);
+			
+			setOutput(output);
 			addKeyListener(input);
 			
 		}// Console constructor
 		
 		Console(Console original)
 		{
-			this(original.getRows(), original.getColumns(), original.getFont().getSize(), 
-					original.getKeyListeners()[0], original.getText());
+			this(original.rows, original.cols, original.fontSize, original.getKeyListeners()[0]);
+			
+			for (int i = 0; i < cells.length; i++)
+				put(i, original.cells[i]);
 			
 		}// Console copy constructor (2)
 			
@@ -77,10 +139,156 @@ public class Game
 		*/
 		public void setOutput(String output)
 		{
-			setText(output);
+			setOutput(output.toCharArray());
+			
+		}// setOutput
+		
+		/**
+		setOutput
+		Displays the given text, lines beyond the grid cut off.
+		Only the cells whose character changed are repainted
+		*/
+		public void setOutput(char[] output)
+		{
+			long start = System.nanoTime();
+			int cell = 0;
+			int line = 0;
+			
+			for (int i = 0; i < output.length && line < lines; i++)
+			{
+				if (output[i] == '\n')
+				{
+					while (cell < (line + 1)*columns)
+						put(cell++, ' ');
+					
+					line++;
+				}
+				else if (cell < (line + 1)*columns)
+					put(cell++, output[i]);
+			}
+			
+			while (cell < cells.length)
+				put(cell++, ' ');
+			
+			repaintDirty();
+			metrics.output(start);
 			
 		}// setOutput
 		
+		/**
+		put
+		Writes one cell, listing it for painting if it changed
+		*/
+		void put(int cell, char ch)
+		{
+			if (ch < FIRST_GLYPH || ch > LAST_GLYPH)
+				ch = MISSING_GLYPH;
+			
+			if (cells[cell] == ch)
+				return;
+			
+			cells[cell] = ch;
+			
+			if (!pending[cell])
+			{
+				pending[cell] = true;
+				dirty[dirtyCount++] = cell;
+			}
+			
+		}// put
+		
+		/**
+		repaintDirty
+		Asks for a repaint of the area covering the changed cells
+		*/
+		void repaintDirty()
+		{
+			if (dirtyCount == 0)
+				return;
+			
+			int top = lines, bottom = 0, left = columns, right = 0;
+			
+			for (int i = 0; i < dirtyCount; i++)
+			{
+				int line = dirty[i]/columns;
+				int column = dirty[i]%columns;
+				
+				top = Math.min(top, line);
+				bottom = Math.max(bottom, line);
+				left = Math.min(left, column);
+				right = Math.max(right, column);
+			}
+			
+			repaint(margin + left*cellWidth, margin + top*cellHeight, 
+					(right - left + 1)*cellWidth, (bottom - top + 1)*cellHeight);
+			
+		}// repaintDirty
+		
+		/**
+		paintComponent
+		Brings the back buffer up to date, copying in the glyphs of
+		the changed cells, or of all of them if the buffer was lost,
+		and shows it
+		*/
+		protected void paintComponent(Graphics g)
+		{
+			do
+			{
+				int status = (buffer == null) ? VolatileImage.IMAGE_INCOMPATIBLE 
+						: buffer.validate(getGraphicsConfiguration());
+				
+				boolean whole = (status != VolatileImage.IMAGE_OK);
+				
+				if (status == VolatileImage.IMAGE_INCOMPATIBLE 
+						|| buffer.getWidth() != getWidth() || buffer.getHeight() != getHeight())
+				{
+					buffer = createVolatileImage(getWidth(), getHeight());
+					whole = true;
+				}
+				
+				Graphics2D b = buffer.createGraphics();
+				
+				if (whole)
+				{
+					b.setColor(Color.BLACK);
+					b.fillRect(0, 0, getWidth(), getHeight());
+					
+					for (int cell = 0; cell < cells.length; cell++)
+						blit(b, cell);
+				}
+				else
+				{
+					for (int i = 0; i < dirtyCount; i++)
+						blit(b, dirty[i]);
+				}
+				
+				b.dispose();
+				g.drawImage(buffer, 0, 0, null);
+			}
+			while (buffer.contentsLost());
+			
+			for (int i = 0; i < dirtyCount; i++)
+				pending[dirty[i]] = false;
+			
+			dirtyCount = 0;
+			
+		}// paintComponent
+		
+		/**
+		blit
+		Copies the glyph of one cell from the atlas
+		*/
+		void blit(Graphics2D b, int cell)
+		{
+			int x = margin + (cell%columns)*cellWidth;
+			int y = margin + (cell/columns)*cellHeight;
+			int glyph = (cells[cell] - FIRST_GLYPH)*cellWidth;
+			
+			b.drawImage(atlas, x, y, x + cellWidth, y + cellHeight, 
+					glyph, 0, glyph + cellWidth, cellHeight, null);
+			
+		}// blit
+		
 	}// Console
 
 	JFrame window;
@@ -93,57 +301,84 @@ public class Game
 		public void keyReleased(KeyEvent e){}
 	};
 
-	static final int ROWS = 21;
-	static final int COLS = 21;
-	static final int DEFAULT_FONT_SIZE = 28;
-	static final int SPAWN_FREQUENCY = 2;
-	static final int SPAWN_QUANTITY = 1;
-	final static int ANIMATION_INTERVAL = 15;
+	AtomicBoolean framePending = new AtomicBoolean(); // showFrame is queued on the event thread
 	
-	static final int PLAYER_STARTING_ROW = ROWS/2;
-	static final int PLAYER_STARTING_COL = COLS/2;
-	
-	Timer animation = new Timer(ANIMATION_INTERVAL, new ActionListener()
-	{					
-		public void actionPerformed(ActionEvent e)
-		{	
-			if (!arrow.move(arrow.moveRow, arrow.moveCol))
+	Runnable showFrame = new Runnable()
+	{
+		public void run()
+		{
+			framePending.set(false);
+			GameLoop.Snapshot snapshot = loop.take();
+			
+			if (snapshot != null)
 			{
-				animation.stop();
-				next();
+				shown = snapshot;
+				refresh();
 			}
 			
-			updateBoard();
-			updateVisible();
-		
-		}// actionPerformed
-	});
+		}// run
+	};
 	
 	Menu visible;
 	Menu previous;
 	
+	// Screens, each built once and shown again whenever it is entered
+	Screens screens;
+	TitleScreen titleScreen;
+	GameInterface gameInterface;
+	InformationScreen informationScreen;
+	OptionsScreen optionsScreen;
+	PauseScreen pauseScreen;
+	GameOverScreen gameOverScreen;
+	ContinueScreen continueScreen;
+	
 	// Dynamic Game Variables
-	int turn;
-	int score;
 	long startTime, endTime, elapsedTime;
+	int rank; // of the game just lost on the leaderboard, 0 if it is not on it
 	
 	// Global Game Variables
-	Player player;
-	Arrow arrow;
-	ArrayList<Spider> enemyList;
-	Piece board[][];
+	Config config;
+	GameLoop loop; // plays the games on its own thread
+	GameLoop.Snapshot shown; // newest frame taken from the loop
+	GameMetrics metrics = GameMetrics.shared();
+	Leaderboard leaderboard;
+	int game; // number of the game being played
 	
 	boolean reverseControls = false;
 	
-	Game()
+	Game(Config config)
 	{	
+		this.config = config;
+		game = 0;
+		leaderboard = Leaderboard.open(config);
+		
+		loop = new GameLoop(config, new Runnable()
+		{
+			public void run()
+			{
+				if (!framePending.getAndSet(true))
+					SwingUtilities.invokeLater(showFrame);
+				
+			}// run
+		});
+		loop.start();
+		
 		window = new JFrame();
 		window.setUndecorated(true);
 		window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		
-		console = new Console(ROWS, COLS, DEFAULT_FONT_SIZE);
+		console = new Console(config.viewRows, config.viewCols, config.fontSize);
 		window.add(console);
 		
+		screens = new Screens(config.viewRows, config.viewCols);
+		titleScreen = new TitleScreen();
+		gameInterface = new GameInterface();
+		informationScreen = new InformationScreen();
+		optionsScreen = new OptionsScreen();
+		pauseScreen = new PauseScreen();
+		gameOverScreen = new GameOverScreen();
+		continueScreen = new ContinueScreen();
+		
 		new StartGame().execute();
 
 		ImageIcon img = new ImageIcon("./icon/finrod.gif");
@@ -152,51 +387,17 @@ public class Game
 		window.setResizable(false);
 		window.setLocationRelativeTo(null);
 		window.setVisible(true);
+		console.requestFocusInWindow();
 		
 		new EnterTitleScreen().execute();
 		
 	}// Game Constructor
 	
-	/**
-	outOfBounds
-	Checks if the given values for a row and column are
-	out of the bounds of the game board
-	*/
-	boolean outOfBounds(int r, int c)
-	{
-		return (r < 0 || board.length <= r || c < 0 || board[0].length <= c);
-	
-	}// outOfBounds
-	
-	/**
-	clearBoard
-	Fills entire game board with the Floor tile piece
-	*/
-	void clearBoard()
+	Game()
 	{
-		for (int r = 0; r < board.length; r++)
-			for (int c = 0; c < board[0].length; c++)
-				board[r][c] = new Floor(r, c);
-	
-	}// clearBoard
-	
-	/**
-	updateBoard
-	Updates the position of all the dynamic board pieces
-	*/
-	void updateBoard()
-	{			
-		clearBoard();
-		
-		if (animation.isRunning())
-			arrow.placeOnBoard();
-		
-		for (Piece spider : enemyList)
-			spider.placeOnBoard();
+		this(new Config());
 		
-		player.placeOnBoard();
-
-	}// updateBoard
+	}// Game default constructor
 	
 	/**
 	updateVisible
@@ -205,10 +406,31 @@ public class Game
 	*/
 	void updateVisible()
 	{
+		long start = System.nanoTime();
+		
 		visible.update();
+		metrics.menu(start);
 	
 	}// updateVisible
 	
+	/**
+	refresh
+	Updates the console after a new frame came from the loop,
+	switching to the game over screen if the player was caught.
+	Frames of a game that was since left behind are ignored
+	*/
+	void refresh()
+	{
+		if (shown.game != game)
+			return;
+		
+		if (shown.over && (visible instanceof GameInterface || visible instanceof PauseScreen))
+			gameOver();
+		else if (visible instanceof GameInterface)
+			updateVisible();
+	
+	}// refresh
+	
 	/**
 	setup
 	Initializes all dynamic game variables to their default values
@@ -217,114 +439,40 @@ public class Game
 	void setup()
 	{
 		// Tracking Variables
-		turn = 0;	
-		score = 0;
 		startTime = 0;
 		endTime = 0;
 		elapsedTime = 0;
 		
-		// Board setup
-		board = new Piece[ROWS][COLS];
-		clearBoard();
-			
-		// Player Setup
-		player = new Player(PLAYER_STARTING_ROW, PLAYER_STARTING_COL);
-		player.placeOnBoard();
-		
-		// Arrow
-		arrow = new Arrow();
-		
-		// Enemies Setup
-		enemyList = new ArrayList<Spider>();
-		
-		//scoreClock.restart();
+		// unlike moves, which are dropped while the loop is behind,
+		// a new game always gets through, or its frames would be ignored
+		game = loop.newGame();
 		
 	}//setup	
 
 	/**
-	spawnSpider
-	Spawns one spider in one of the four edges of the game map.
-	This function is recursive and does NOT internally check for
-	overflows. Overflow prevention should be present before function call.
-	If the function is unable to spawn a spider in the map, a stack
-	overflow *WILL OCCUR*
+	move
+	Has the loop move the player, given one of the engine's move
+	commands
 	*/
-	void spawnSpider()
+	void move(int command)
 	{
-		int r = -1, c = -1;
-		boolean horizontal = (int)(Math.random()*2) == 0; // false means vertical
-		boolean topOrLeft = (int)(Math.random()*2) == 0; // false means (bottom / right)
-		
-		if (horizontal)
-		{	
-			if (topOrLeft)
-				r = 0;
-			else
-				r = board.length - 1;
-	
-			c = (int)(Math.random()*board[r].length);	
-		}
-		else
-		{
-			r = (int)(Math.random()*board.length);
-			
-			if (topOrLeft)
-				c = 0;
-			else
-				c = board[r].length - 1;
-		}
-		
-		if (board[r][c].ascii != Piece.FLOOR)
-			spawnSpider(); // recursion point
-		else
-		{
-			Spider s = new Spider(r, c); // break case
-			s.placeOnBoard();
-		}
+		loop.send(command);
 		
-	}// spawnSpider
+	}// move
 	
 	/**
-	next
-	Advances the game to the next turn by performing each turn's subroutines.
-	1 - updates the board to current values
-	2 - each spider moves following the order of spawn
-	3 - if a spider spawn is due, one is performed
-	4 - the turn counter is updated
-	5 - the console is updated
+	shoot
+	Has the loop fire an arrow, given one of the engine's shoot
+	commands, turned around if the reverse control scheme is on
 	*/
-	void next()
-	{	
-		updateBoard();
-		
-		for (Spider s : enemyList)
-		{
-			s.hunt();
-			updateBoard();
-		}
-		
-		for (Spider s : enemyList)
-		{
-			if (!s.moved)
-			{
-				s.hunt();
-				updateBoard();
-			}
-		}
-		
-		if (turn%SPAWN_FREQUENCY == 0 && enemyList.size() < 2*(board.length - 1) + 2*(board[0].length - 1) - SPAWN_QUANTITY -1) // prevents stack overflow
-		{
-			for (int i = 0; i < SPAWN_QUANTITY; i++)
-			{
-				spawnSpider();
-				updateBoard();
-			}
-		}
+	void shoot(int command)
+	{
+		if (reverseControls)
+			command = Engine.SHOOT_UP + (command - Engine.SHOOT_UP + 2)%4;
 		
-		turn++;
-		updateVisible();
-					
-	}// next
+		loop.send(command);
+	
+	}// shoot
 	
 	/**
 	changeVisible
@@ -338,311 +486,29 @@ public class Game
 		
 		visible = newVisible;
 		console.setInput(visible.controls);
+		loop.setAutoplay(config.autoplay && visible == gameInterface);
 		updateVisible();
 	
 	}// changeVisible
 	
-	void gameOver()
-	{
-		endTime = System.currentTimeMillis();
-		changeVisible(new GameOverScreen());
-		
-	}// gameOver
-	
-	
-	/** GAME TILES **/
-	
-	
-	class Piece
-	{
-		final static char FLOOR = ' ';
-		final static char PLAYER = '@';
-		final static char SPIDER = 'm';
-		
-		char ascii;
-		int row;
-		int col;
-		
-		Piece(char a, int r, int c)
-		{
-			ascii = a;
-			row = r;
-			col = c;	
-		}
-		
-		boolean move(int drow, int dcol)
-		{
-			int destRow = row + drow;
-			int destCol = col + dcol;
-			
-			if (outOfBounds(destRow, destCol))
-				return false;
-			
-			row = destRow;
-			col = destCol;
-			placeOnBoard();
-			return true;
-		}
-		
-		boolean moveTo(int r, int c)
-		{	
-			if (outOfBounds(r, c))
-				return false;
-			
-			row = r;
-			col = c;
-			placeOnBoard();
-			return true;
-		}
-		
-		void placeOnBoard()
-		{
-			board[row][col] = this;
-		}
-		
-		public String toString()
-		{
-			return Character.toString(ascii);
-		}
-		
-	}// Piece
-	
-	class Floor extends Piece
+	/**
+	enter
+	Shows the given menu with its first option selected
+	*/
+	void enter(Menu menu)
 	{
-		Floor(int r, int c)
-		{
-			super(Piece.FLOOR, r, c);		
-		}
+		menu.index = 0;
+		changeVisible(menu);
 		
-	}// Floor
+	}// enter
 	
-	class Spider extends Piece
-	{	
-		boolean moved;
-		
-		Spider(int r, int c)
-		{
-			super(Piece.SPIDER, r, c);
-			enemyList.add(this);
-			moved = false;
-		}
-		
-		void kill()
-		{
-			enemyList.remove(this);
-			updateBoard();
-		}
-		
-		void hunt()
-		{
-			moved = false;
-			
-			int rDist = Math.abs(player.row - row);
-			int cDist = Math.abs(player.col - col);
-			
-			if (rDist <= 1 && cDist <= 1 )
-			{
-				gameOver();
-				return;
-			}
-
-			int destRow = row;
-			int destCol = col;
-			
-			if (rDist != 0)
-				destRow += (player.row - row)/rDist;
-				
-			if (cDist != 0)
-				destCol += (player.col - col)/cDist;
-			
-			if (board[destRow][destCol].ascii == Piece.FLOOR)
-			{
-				moveTo(destRow, destCol);
-				moved = true;
-				return;
-			}
-
-			if (rDist < cDist)
-			{
-				if (cDist != 0)
-					destCol -= (player.col - col)/cDist;
-			}
-			else
-			{
-				if (rDist != 0)
-					destRow -= (player.row - row)/rDist;
-			}
-			
-			if (board[destRow][destCol].ascii == Piece.FLOOR)
-			{
-				moveTo(destRow, destCol);
-				moved = true;
-				return;
-			}
-			
-			if (rDist < cDist)
-			{
-				if (rDist != 0)
-					destRow -= (player.row - row)/rDist;
-			}
-			else
-			{	
-				if (cDist != 0)
-					destCol -= (player.col - col)/cDist;
-			}
-			
-			if (board[destRow][destCol].ascii == Piece.FLOOR)
-			{
-				moveTo(destRow, destCol);
-				moved = true;
-				return;
-			}
-			
-				
-		}// hunt
-		
-	}// Spider
-	
-	class Player extends Piece
-	{		
-		int turnsToReady;
-		final int RELOAD_TIME = 3;
-		
-		Player(int r, int c)
-		{
-			super(Piece.PLAYER, r, c);
-			
-			turnsToReady = 0;
-			
-		}// Player constructor	
-
-		boolean move(int drow, int dcol)
-		{
-			int destRow = row + drow;
-			int destCol = col + dcol;
-			
-			if (outOfBounds(destRow, destCol))
-				return false;
-			
-			if (board[destRow][destCol].ascii == Piece.SPIDER)
-				return false;
-			
-			if(animation.isRunning())
-				arrow.completeAnimation();
-			
-			row = destRow;
-			col = destCol;
-			placeOnBoard();
-		
-			if (drow == 0 && dcol == 0)
-				turnsToReady = 0;
-			else
-				if (turnsToReady > 0)
-					turnsToReady--;
-			
-			next();
-			
-			return true;
-			
-		}// move
-	
-		void shoot(int aimRow, int aimCol)
-		{	
-			if (turnsToReady > 0)
-				return;
-			
-			if(animation.isRunning())
-				arrow.completeAnimation();
-			
-			turnsToReady = RELOAD_TIME;
-			
-			if (reverseControls)
-			{
-				aimRow *= -1;
-				aimCol *= -1;
-			}
-			
-			arrow = new Arrow(aimRow, aimCol);
-			arrow.fly();
-		
-		}// shoot
-				
-	}// Player
-	
-	class Arrow extends Piece
+	void gameOver()
 	{
-		boolean vertical;
-		int moveRow, moveCol;
-		int multiplier;
-
-		Arrow(int dr, int dc)
-		{
-			super('-', player.row, player.col);
-			
-			vertical = (dc == 0);
-			multiplier = 0;
-			moveRow = dr;
-			moveCol = dc;
-	
-		}// Arrow constructor
-		
-		void completeAnimation()
-		{						
-			animation.stop();
-		
-			while (arrow.move(arrow.moveRow, arrow.moveCol));
-			next();
-			updateBoard();
-			updateVisible();
-		}
-		
-		Arrow()
-		{
-			this(0, 0);
-			
-		}// Arrow no-arg constructor
-		
-		boolean move(int drow, int dcol)
-		{
-			int destRow = row + drow;
-			int destCol = col + dcol;
-			
-			if (outOfBounds(destRow, destCol))
-				return false;
-			
-			if (board[destRow][destCol].ascii == Piece.SPIDER)
-			{
-				((Spider)board[destRow][destCol]).kill();
-				score += Math.pow(2, multiplier++);
-				if (score > 999)
-					score = 999;
-			}
-					
-			row = destRow;
-			col = destCol;
-			placeOnBoard();
-			
-			return true;
-			
-		}// move
-		
-		void fly()
-		{
-			multiplier = 0;
-			animation.start();
-			
-		}// fly
-		
-		public String toString()
-		{
-			if (vertical)
-				return "!";
-			else
-				return super.toString();
-		
-		}// toString
+		endTime = System.currentTimeMillis();
+		rank = leaderboard.add(new Leaderboard.Run(shown.score, shown.turn, endTime - startTime, shown.seed, reverseControls));
+		changeVisible(gameOverScreen);
 		
-	}// Arrow
+	}// gameOver
 	
 	
 	/** FUNCTIONS **/
@@ -706,7 +572,7 @@ public class Game
 		
 		void execute()
 		{
-			changeVisible(new TitleScreen());
+			enter(titleScreen);
 			
 		}// execute
 		
@@ -722,7 +588,7 @@ public class Game
 		
 		void execute()
 		{
-			changeVisible(new OptionsScreen());
+			enter(optionsScreen);
 			
 		}// execute
 		
@@ -745,9 +611,8 @@ public class Game
 		void execute()
 		{
 			setup();
-			updateBoard();
 			startTime = System.currentTimeMillis();
-			changeVisible(new GameInterface());
+			changeVisible(gameInterface);
 			
 		}// execute
 		
@@ -769,7 +634,7 @@ public class Game
 		
 		void execute()
 		{
-			changeVisible(new GameInterface());
+			changeVisible(gameInterface);
 			
 		}// execute
 		
@@ -802,7 +667,7 @@ public class Game
 		
 		void execute()
 		{
-			changeVisible(new InformationScreen());
+			enter(informationScreen);
 			
 		}// execute
 		
@@ -818,7 +683,7 @@ public class Game
 		
 		void execute()
 		{
-			changeVisible(new PauseScreen());
+			enter(pauseScreen);
 			
 		}// execute
 		
@@ -845,10 +710,10 @@ public class Game
 			index = 0;
 			
 			options = new ArrayList<Function>();
-			options.add(new StartGame("Start"));
-			options.add(new EnterInfoScreen("How To Play"));
-			options.add(new EnterOptionsScreen("Options"));
-			options.add(new ExitGame("Exit"));
+			options.add(new StartGame(Screens.TITLE_OPTIONS[0]));
+			options.add(new EnterInfoScreen(Screens.TITLE_OPTIONS[1]));
+			options.add(new EnterOptionsScreen(Screens.TITLE_OPTIONS[2]));
+			options.add(new ExitGame(Screens.TITLE_OPTIONS[3]));
 			
 			controls = new KeyListener()
 					{
@@ -897,58 +762,7 @@ public class Game
 
 		void update()
 		{
-			String out = "";
-
-			out += " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-\n";
-			out += "/                                           \\\n";
-			
-			int skips = 6;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-
-			out += "/          A Song of Birch and Silk         /\n";
-			out += "/        ____________________________       /\n";
-			
-			skips = 3;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-			
-			for (int i = 0; i < options.size(); i++)
-			{
-				String optionString = options.get(i).toString();
-				String line = "";
-				
-				int margin = 8;
-				
-				line += "/";
-				for (int spc = 0; spc < margin; spc++)
-					line += " ";
-
-				if (i == index)
-					line += ">  ";
-				else
-					line += "   ";
-					
-				line += optionString;
-				
-				int padding = 44 - line.length();
-				
-				for (int j = 0; j < padding; j++)
-					line += " ";
-				
-				line += "/\n";
-		
-				out += line;
-			}
-			
-			skips = 4;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-			
-			out += "\\\t\t\t         ver 1.0.0  /\n";
-			out += " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-";
-			
-			console.setText(out);
+			console.setOutput(screens.title(index, leaderboard.best()));
 			
 		}// update
 		
@@ -956,6 +770,8 @@ public class Game
 	
 	class GameInterface extends Menu
 	{
+		Function pause = new EnterPauseScreen();
+		
 		GameInterface()
 		{
 			controls = new KeyListener()
@@ -968,46 +784,46 @@ public class Game
 					{
 						// System
 						case KeyEvent.VK_ESCAPE:
-							new EnterPauseScreen().execute();
+							pause.execute();
 							break;
 							
 						// Movement
 						case KeyEvent.VK_A:
 						case KeyEvent.VK_NUMPAD4:
-							player.move(0, -1);
+							move(Engine.MOVE_LEFT);
 							break;
 						case KeyEvent.VK_W:
 						case KeyEvent.VK_NUMPAD8:
-							player.move(-1, 0);
+							move(Engine.MOVE_UP);
 							break;
 						case KeyEvent.VK_S:
 						case KeyEvent.VK_NUMPAD2:
-							player.move(1, 0);
+							move(Engine.MOVE_DOWN);
 							break;
 						case KeyEvent.VK_D:
 						case KeyEvent.VK_NUMPAD6:
-							player.move(0, 1);
+							move(Engine.MOVE_RIGHT);
 							break;				
 						case KeyEvent.VK_SPACE:
 						case KeyEvent.VK_NUMPAD5:
-							player.move(0, 0);
+							move(Engine.WAIT);
 							break;
 							
 						// Shooting					
 						case KeyEvent.VK_UP:
-							player.shoot(-1, 0);
+							shoot(Engine.SHOOT_UP);
 							break;
 							
 						case KeyEvent.VK_DOWN:
-							player.shoot(+1, 0);
+							shoot(Engine.SHOOT_DOWN);
 							break;
 							
 						case KeyEvent.VK_LEFT:
-							player.shoot(0, -1);
+							shoot(Engine.SHOOT_LEFT);
 							break;
 							
 						case KeyEvent.VK_RIGHT:
-							player.shoot(0, +1);
+							shoot(Engine.SHOOT_RIGHT);
 							break;
 						
 					}// code switch
@@ -1022,55 +838,10 @@ public class Game
 		
 		void update()
 		{
-			String s = ""; 
-			
-			switch(player.turnsToReady)
-			{
-				case 0:
-					s += " -=-=-=-=-=-=[ =-------------> ]=-=-=-=-=-=-\n";
-					break;
-					
-				case 1:
-					s += " -=-=-=-=-=-=[    ---------    ]=-=-=-=-=-=-\n";
-					break;
-					
-				case 2:
-					s += " -=-=-=-=-=-=[       ---       ]=-=-=-=-=-=-\n";
-					break;					
-				
-				case 3:
-					s += " -=-=-=-=-=-=[                 ]=-=-=-=-=-=-\n";
-					break;
-						
-			}// turnsToReady switch
-			
-			for (int r = 0; r < board.length; r++)
-			{
-				if (r == board.length - 1)
-					s += "\\ ";
-				else
-					s += "/ ";
-				
-				for (int c = 0; c < board[r].length; c++)
-				{
-					s += board[r][c] + " ";
-					
-					if (c == board[r].length - 1)
-						if (r == 0)
-							s += "\\";	
-						else
-							s += "/";
-					
-				}// for each column
-			
-				if (r < board.length - 1)
-					s+= "\n";
-
-			}// for each row
-			
-			String scoreString = new DecimalFormat("000").format(score);
-			s += "\n -=-=-=-=-=-=-=-=-=[ " + scoreString + " ]=-=-=-=-=-=-=-=-=-";
-			console.setOutput(s);
+			// the loop draws the game, headers included; until the
+			// first frame of a new game arrives the old screen stays
+			if (shown != null && shown.game == game)
+				console.setOutput(shown.text);
 			
 		}// update
 		
@@ -1078,13 +849,15 @@ public class Game
 
 	class InformationScreen extends Menu
 	{
+		Function back = new EnterPrevious();
+		
 		InformationScreen()
 		{
 			controls = new KeyListener()
 					{
 						public void keyPressed(KeyEvent e)
 						{
-							new EnterPrevious().execute();
+							back.execute();
 							
 						}// keyPressed
 
@@ -1097,33 +870,7 @@ public class Game
 		
 		void update()
 		{
-			String out = "";
-			
-			out += " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-\n";
-			out += "/                                           \\\n";
-			out += "/         m <--- this is a spider           /\n";
-			out += "/         @ <--- this is you                /\n";
-			out += "/                                           /\n";
-			out += "/                                           /\n";
-			out += "/   - Move using [WASD]                     /\n";
-			out += "/                                           /\n";
-			out += "/   - Wait by pressing [SPACEBAR]           /\n";
-			out += "/                                           /\n";
-			out += "/   - Shoot using the [ARROW KEYS]          /\n";
-			out += "/                                           /\n";
-			out += "/   - [ESC] accesses the in-game menu       /\n";
-			out += "/                                           /\n";
-			out += "/   - You must have an arrow fully          /\n";
-			out += "/     drawn before you can shoot            /\n";
-			out += "/                                           /\n";
-			out += "/   - It takes [3 TURNS] to fully draw      /\n";
-			out += "/     an arrow while moving                 /\n";
-			out += "/                                           /\n";
-			out += "/   - But just [1 TURN] if you wait         /\n";
-			out += "\\                                           /\n";
-			out += " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-";
-			
-			console.setText(out);
+			console.setOutput(screens.information());
 			
 		}// update
 		
@@ -1131,6 +878,8 @@ public class Game
 
 	class OptionsScreen extends Menu
 	{
+		Function back = new EnterPrevious();
+		
 		OptionsScreen()
 		{			
 			controls = new KeyListener()
@@ -1141,7 +890,7 @@ public class Game
 							{
 									
 								case KeyEvent.VK_ESCAPE:
-									new EnterPrevious().execute();
+									back.execute();
 									break;
 									
 								default:
@@ -1160,44 +909,9 @@ public class Game
 				
 		}// PauseScreen constructor
 		
-		public void update()
+		void update()
 		{
-			String out = "";
-
-			out += " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-\n";
-			out += "/                                           \\\n";
-
-			int skips = 7;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-			
-			out += "/   Control scheme: ";
-			
-			out += ((reverseControls) ? "  Default  [Reverse]    /\n" : " [Default]  Reverse     /\n");
-			
-			skips = 1;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-			
-			if (reverseControls)
-			{
-				out += "/    Arrows are fired in the opposite       /\n";
-				out += "/    direction of the pressed arrow key     /\n";
-			}
-			else
-			{				
-				out += "/    Arrows are fired in the same           /\n";
-				out += "/    direction of the pressed arrow key     /\n";
-			}
-			
-			skips = 8;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-
-			out += "\\                                           /\n";
-			out += " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-";
-			
-			console.setText(out);
+			console.setOutput(screens.options(reverseControls));
 			
 		}// update
 		
@@ -1211,11 +925,11 @@ public class Game
 		
 			options = new ArrayList<Function>();
 
-			options.add(new ResumeGame("Resume"));
-			options.add(new StartGame("Restart"));
-			options.add(new EnterOptionsScreen("Options"));
-			options.add(new EnterInfoScreen("How to Play"));
-			options.add(new EnterTitleScreen("Exit to Main Menu"));
+			options.add(new ResumeGame(Screens.PAUSE_OPTIONS[0]));
+			options.add(new StartGame(Screens.PAUSE_OPTIONS[1]));
+			options.add(new EnterOptionsScreen(Screens.PAUSE_OPTIONS[2]));
+			options.add(new EnterInfoScreen(Screens.PAUSE_OPTIONS[3]));
+			options.add(new EnterTitleScreen(Screens.PAUSE_OPTIONS[4]));
 			
 			controls = new KeyListener()
 					{
@@ -1246,7 +960,7 @@ public class Game
 									break;
 									
 								case KeyEvent.VK_ESCAPE:
-									new ResumeGame().execute();
+									options.get(0).execute(); // Resume
 									break;
 									
 							}// keyCode switch
@@ -1264,53 +978,7 @@ public class Game
 		
 		void update()
 		{
-			String out = "";
-
-			out += " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-\n";
-			out += "/                                           \\\n";
-
-			int skips = 7;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-			
-			for (int i = 0; i < options.size(); i++)
-			{
-				String optionString = options.get(i).toString();
-				String line = "";
-				
-				int margin = 2;
-				
-				line += "/";
-				for (int spc = 0; spc < margin; spc++)
-					line += " ";
-
-				if (i == index)
-					line += ">  ";
-				else
-					line += "   ";
-					
-				line += optionString;
-				
-				int padding = 44 - line.length();
-				
-				for (int j = 0; j < padding; j++)
-					line += " ";
-				
-				line += "/\n";
-		
-				out += line;
-				
-			}
-			
-			skips = 7;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-
-
-			out += "\\                                           /\n";
-			out += " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-";
-			
-			console.setText(out);
+			console.setOutput(screens.pause(index));
 			
 		}// update
 		
@@ -1330,7 +998,7 @@ public class Game
 					{
 						// System
 						case KeyEvent.VK_ESCAPE:
-							changeVisible(new ContinueScreen());
+							enter(continueScreen);
 							break;
 		
 					}// code switch
@@ -1345,37 +1013,7 @@ public class Game
 		
 		void update()
 		{
-			String s = ""; 
-			s += " -=-=-=-=-=-=-=-[ GAME OVER ]-=-=-=-=-=-=-=-\n";
-			
-			for (int r = 0; r < board.length; r++)
-			{
-				if (r == board.length - 1)
-					s += "\\ ";
-				else
-					s += "/ ";
-				
-				for (int c = 0; c < board[r].length; c++)
-				{
-					s += board[r][c] + " ";
-					
-					if (c == board[r].length - 1)
-						if (r == 0)
-							s += "\\";	
-						else
-							s += "/";
-					
-				}// for each column
-			
-				if (r < board.length - 1)
-					s+= "\n";
-
-			}// for each row
-			
-
-			s += "\n -=-=-=-=-[ Press ESC to continue ]-=-=-=-=-";
-			
-			console.setOutput(s);
+			console.setOutput(shown.text);
 			
 		}// update
 		
@@ -1389,8 +1027,8 @@ public class Game
 			
 			options = new ArrayList<Function>();
 
-			options.add(new StartGame("New Game"));
-			options.add(new EnterTitleScreen("Main Menu"));
+			options.add(new StartGame(Screens.RESULT_OPTIONS[0]));
+			options.add(new EnterTitleScreen(Screens.RESULT_OPTIONS[1]));
 			
 			controls = new KeyListener()
 					{
@@ -1435,69 +1073,8 @@ public class Game
 
 		void update()
 		{
-			String out = "";
-
-			out += " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-\n";
-			out += "/                                           \\\n";
-
-			int skips = 4;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-	
-			String scoreString = new DecimalFormat("000").format(score);
-			out += "/                  - " + scoreString + " -                  /\n";
-
-			skips = 1;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-			
 			elapsedTime = endTime - startTime;
-			String ms = new DecimalFormat("000").format(elapsedTime%1000);
-			String s = new DecimalFormat("00").format((elapsedTime/1000)%60);
-			String min = new DecimalFormat("00").format((elapsedTime/(1000*60)%60));
-			out += "/                 " + min + ":" + s + ":" + ms + "                 /\n";
-			
-			skips = 3;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-			
-			
-			for (int i = 0; i < options.size(); i++)
-			{
-				String optionString = options.get(i).toString();
-				String line = "";
-				
-				int margin = 14;
-				
-				line += "/";
-				for (int spc = 0; spc < margin; spc++)
-					line += " ";
-
-				if (i == index)
-					line += ">  ";
-				else
-					line += "   ";
-					
-				line += optionString;
-				
-				int padding = 44 - line.length();
-				
-				for (int j = 0; j < padding; j++)
-					line += " ";
-				
-				line += "/\n";
-		
-				out += line;
-			}
-			
-			skips = 7;
-			for (int i = 0; i < skips; i++)
-				out += "/                                           /\n";
-
-			out += "\\                                           /\n";
-			out += " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-";
-			
-			console.setText(out);
+			console.setOutput(screens.results(index, shown.score, elapsedTime, rank));
 			
 		}// update
 		
@@ -0,0 +1,69 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+GameEvents
+Flight recorder events of the game, written by GameMetrics. They cost
+nothing until a recording enables them, e.g. with
+jcmd PID JFR.start settings=profile, or at startup with
+-XX:StartFlightRecording. Each carries the time it measured as a
+field, since it is committed once the measured work is over
+*/
+public class GameEvents
+{
+	static final String CATEGORY = "A Song of Birch and Silk";
+
+	@Name("song.Turn")
+	@Label("Turn")
+	@Category(CATEGORY)
+	@Description("A turn of a game played out")
+	static class Turn extends Event
+	{
+		@Label("Turn")
+		int turn;
+
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+
+		@Label("Spiders")
+		int spiders;
+
+		@Label("Spiders Moved")
+		int moved;
+
+		@Label("Spiders Spawned")
+		int spawned;
+
+		@Label("Spiders Killed")
+		@Description("Spiders shot since the turn before")
+		int killed;
+
+		@Label("Allocated")
+		@DataAmount
+		long allocated;
+
+	}// Turn
+
+	@Name("song.Draw")
+	@Label("Draw")
+	@Category(CATEGORY)
+	@Description("A screen drawn or shown")
+	static class Draw extends Event
+	{
+		@Label("What")
+		@Description("board, menu, output or animation")
+		String what;
+
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+
+	}// Draw
+
+}// GameEvents
@@ -0,0 +1,352 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+GameLoop
+Runs the games of a session on a thread of their own, so a slow turn
+never holds up the thread that reads the keys and paints the screen.
+Commands are queued by the input thread and frames are handed back
+through three rotating buffers, neither side ever waiting on a lock:
+the loop renders into its own buffer and swaps it into the middle,
+the display swaps the middle for the buffer it is done with, and a
+buffer is never written while it is being shown.
+With autoplay on, the loop has the bot play whenever it is idle.
+Every game is recorded as it is played, see Replay
+*/
+public class GameLoop implements Runnable
+{
+	static final int NEW_GAME = Engine.COMMANDS; // command starting a game with the next seed, see newGame
+	static final int NONE = -1;
+
+	static final int QUEUE_SIZE = 64; // a power of two
+	static final long ANIMATION_INTERVAL = 15_000_000L; // nanoseconds between steps of an arrow
+	static final long BOT_INTERVAL = 150_000_000L; // nanoseconds at least between moves of the bot
+	static final int FRESH = 4; // added to the middle buffer's index while it holds an unseen frame
+
+	/**
+	Snapshot
+	A rendered in-game screen and the state shown alongside it
+	*/
+	static class Snapshot
+	{
+		char[] text;
+		int game; // number of the game it shows, counting from 1
+		int score;
+		int turn;
+		long seed; // of the game shown
+		boolean over;
+
+		Snapshot(int length)
+		{
+			text = new char[length];
+
+		}// Snapshot constructor
+
+	}// Snapshot
+
+	Config config;
+	SplitMix seeds; // seeds each new game of the session
+	Engine engine;
+	volatile Replay replay; // recording of the game, closed by a shutdown hook as well
+	int game;
+	BoardFrame frame;
+	GameMetrics metrics;
+
+	Runnable onFrame; // told, on the loop's thread, that a frame is ready
+	Thread thread;
+
+	Bot bot; // plays while autoplay is on, or null if the settings never let it
+	volatile boolean autoplay;
+
+	// input queue, a ring written by one thread and read by the loop
+	int[] commands;
+	AtomicLong head; // next command to play, moved by the loop only
+	AtomicLong tail; // next free place, moved by the input thread only
+
+	// new games, asked for beside the queue so that asking never fails
+	AtomicLong newGameAt; // tail when the last new game was asked for, or NONE once started
+	volatile int gamesAsked; // written by the input thread only
+
+	// frame buffers
+	Snapshot[] snapshots;
+	int back;  // buffer the loop renders into
+	int front; // buffer on display
+	AtomicInteger middle; // buffer handed from one to the other
+
+	GameLoop(Config config, Runnable onFrame)
+	{
+		this.config = config;
+		this.onFrame = onFrame;
+		seeds = new SplitMix(config.seed);
+		game = 0;
+
+		frame = new BoardFrame(config.viewRows, config.viewCols);
+		metrics = GameMetrics.shared();
+
+		if (config.autoplay)
+			bot = new Bot(config.botIterations, config.seed);
+
+		commands = new int[QUEUE_SIZE];
+		head = new AtomicLong();
+		tail = new AtomicLong();
+		newGameAt = new AtomicLong(NONE);
+		gamesAsked = 0;
+
+		snapshots = new Snapshot[3];
+		for (int i = 0; i < snapshots.length; i++)
+			snapshots[i] = new Snapshot(frame.text.length);
+
+		back = 0;
+		front = 1;
+		middle = new AtomicInteger(2);
+
+		thread = new Thread(this, "game loop");
+		thread.setDaemon(true);
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+		{
+			public void run()
+			{
+				if (replay != null)
+					replay.close();
+
+			}// run
+		}, "replay close"));
+
+	}// GameLoop constructor
+
+	void start()
+	{
+		thread.start();
+
+	}// start
+
+	/**
+	setAutoplay
+	Lets the bot play, if there is one, or stops it. Called from any
+	thread
+	*/
+	void setAutoplay(boolean on)
+	{
+		autoplay = on && bot != null;
+		LockSupport.unpark(thread);
+
+	}// setAutoplay
+
+	/**
+	send
+	Queues a command for the loop. Called from one thread only;
+	returns false, dropping the command, if the queue is full
+	*/
+	boolean send(int command)
+	{
+		long t = tail.get();
+
+		if (t - head.get() == QUEUE_SIZE)
+			return false;
+
+		commands[(int)t & (QUEUE_SIZE - 1)] = command;
+		tail.lazySet(t + 1);
+		LockSupport.unpark(thread);
+
+		return true;
+
+	}// send
+
+	/**
+	newGame
+	Has the loop start a new game, dropping the commands queued
+	before it, which were meant for the game being left. Called from
+	the thread that sends the commands; unlike send it cannot fail,
+	since a new game does not take a place in the queue. Returns the
+	number of the new game
+	*/
+	int newGame()
+	{
+		int asked = gamesAsked + 1;
+
+		gamesAsked = asked;
+		newGameAt.set(tail.get());
+		LockSupport.unpark(thread);
+
+		return asked;
+
+	}// newGame
+
+	/**
+	poll
+	Takes the oldest queued command, or NONE. A new game that was
+	asked for comes first, as NEW_GAME, skipping what was queued
+	before it
+	*/
+	int poll()
+	{
+		long h = head.get();
+		long t = tail.get();
+
+		// read after the tail, so a command sent after a new game
+		// was asked for is never taken for one before it
+		long at = newGameAt.get();
+
+		if (at != NONE)
+		{
+			newGameAt.compareAndSet(at, NONE);
+			head.lazySet(Math.max(h, at));
+			return NEW_GAME;
+		}
+
+		if (h == t)
+			return NONE;
+
+		int command = commands[(int)h & (QUEUE_SIZE - 1)];
+		head.lazySet(h + 1);
+
+		return command;
+
+	}// poll
+
+	/**
+	take
+	The newest frame not yet taken, or null if there is none. Called
+	from the displaying thread only; the frame stays untouched until
+	the next frame is taken
+	*/
+	Snapshot take()
+	{
+		if ((middle.get() & FRESH) == 0)
+			return null;
+
+		front = middle.getAndSet(front) & ~FRESH;
+		return snapshots[front];
+
+	}// take
+
+	public void run()
+	{
+		long nextStep = 0;
+
+		while (true)
+		{
+			int command = poll();
+
+			if (command != NONE)
+			{
+				if (play(command))
+				{
+					render();
+					nextStep = System.nanoTime() + ANIMATION_INTERVAL;
+				}
+			}
+			else if (engine != null && engine.arrowFlying)
+			{
+				long wait = nextStep - System.nanoTime();
+
+				if (wait > 0)
+					LockSupport.parkNanos(this, wait);
+				else
+				{
+					long start = System.nanoTime();
+
+					engine.stepArrow();
+					render();
+					metrics.animation(start);
+					nextStep = System.nanoTime() + ANIMATION_INTERVAL;
+				}
+			}
+			else if (autoplay && engine != null && !engine.over)
+			{
+				long wait = nextStep - System.nanoTime();
+
+				if (wait > 0)
+					LockSupport.parkNanos(this, wait);
+				else
+				{
+					long start = System.nanoTime();
+
+					if (play(bot.choose(engine)))
+						render();
+
+					// the search counts towards the wait for the next move
+					nextStep = engine.arrowFlying ? System.nanoTime() + ANIMATION_INTERVAL : start + BOT_INTERVAL;
+				}
+			}
+			else
+				LockSupport.park(this);
+		}
+
+	}// run
+
+	/**
+	play
+	Carries out a command, returning whether anything changed
+	*/
+	boolean play(int command)
+	{
+		if (command == NEW_GAME)
+		{
+			if (replay != null)
+				replay.close();
+
+			engine = new Engine(config, seeds.nextLong());
+			engine.metrics = metrics;
+			replay = Replay.record(config, engine);
+
+			// new games asked for at once are started as one, the last
+			game = gamesAsked;
+			return true;
+		}
+
+		if (engine == null)
+			return false;
+
+		int turn = engine.turn; // a flying arrow can land even if the command fails
+		boolean played;
+
+		if (command >= Engine.SHOOT_UP)
+			played = engine.shoot(Engine.DROW[command], Engine.DCOL[command]);
+		else
+			played = engine.move(Engine.DROW[command], Engine.DCOL[command]);
+
+		if (played)
+			replay.add(command, engine);
+
+		return played || engine.turn != turn;
+
+	}// play
+
+	/**
+	render
+	Draws the current game into the back buffer and hands it over
+	to the display, unless the screen did not change. Called after
+	every change to the game, so it also ends the recording of a
+	game that is over
+	*/
+	void render()
+	{
+		if (engine.over)
+			replay.finish(engine);
+
+		long start = System.nanoTime();
+
+		frame.drawScreen(engine);
+		metrics.board(start);
+
+		if (frame.changeCount == 0 && !frame.redraw)
+			return;
+
+		Snapshot snapshot = snapshots[back];
+		System.arraycopy(frame.text, 0, snapshot.text, 0, frame.text.length);
+		snapshot.game = game;
+		snapshot.score = engine.score;
+		snapshot.turn = engine.turn;
+		snapshot.seed = engine.seed;
+		snapshot.over = engine.over;
+		frame.clearChanges();
+
+		back = middle.getAndSet(back | FRESH) & ~FRESH;
+		onFrame.run();
+
+	}// render
+
+}// GameLoop
@@ -0,0 +1,218 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.EventType;
+
+/**
+GameMetrics
+Where the time of the games goes: how long turns take and what they
+allocate, how long drawing the board, the menus and the output and
+stepping arrows take, and how many spiders move, spawn and die.
+One set is shared by every game of the process, window or server,
+and shown over JMX; every measure is also a flight recorder event,
+made only while a recording enables it, so turns and draws allocate
+nothing otherwise. Engines only report to it when given it, so the benchmarks and
+other headless games are not measured
+*/
+public class GameMetrics implements GameMetricsMXBean
+{
+	static final String NAME = "song:type=GameMetrics";
+
+	// Kinds of Draw events
+	static final String BOARD = "board";
+	static final String MENU = "menu";
+	static final String OUTPUT = "output";
+	static final String ANIMATION = "animation";
+
+	// Checked before making an event, so none is allocated unrecorded
+	static final EventType TURN_EVENT = EventType.getEventType(GameEvents.Turn.class);
+	static final EventType DRAW_EVENT = EventType.getEventType(GameEvents.Draw.class);
+
+	static GameMetrics shared;
+
+	LongAdder turns = new LongAdder();
+	LongAdder spidersMoved = new LongAdder();
+	LongAdder spidersSpawned = new LongAdder();
+	LongAdder spidersKilled = new LongAdder();
+
+	Histogram turnTime = new Histogram();
+	Histogram turnAllocation = new Histogram();
+	Histogram boardTime = new Histogram();
+	Histogram menuTime = new Histogram();
+	Histogram outputTime = new Histogram();
+	Histogram animationTime = new Histogram();
+
+	com.sun.management.ThreadMXBean threads; // null where allocations are not counted
+
+	GameMetrics()
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemoryEnabled())
+			threads = (com.sun.management.ThreadMXBean)bean;
+
+	}// GameMetrics constructor
+
+	/**
+	shared
+	The metrics of the process, registered with the platform MBean
+	server the first time they are asked for
+	*/
+	static synchronized GameMetrics shared()
+	{
+		if (shared == null)
+		{
+			shared = new GameMetrics();
+
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().registerMBean(shared, new ObjectName(NAME));
+			}
+			catch (JMException e)
+			{
+				System.err.println("game metrics are not shown over JMX: " + e);
+			}
+		}
+
+		return shared;
+
+	}// shared
+
+	/**
+	allocated
+	Bytes allocated so far by the calling thread, or -1 if unknown
+	*/
+	long allocated()
+	{
+		return (threads == null) ? -1 : threads.getCurrentThreadAllocatedBytes();
+
+	}// allocated
+
+	/**
+	turn
+	Records a turn the engine just played, begun at the given
+	nanoTime with the given bytes allocated
+	*/
+	void turn(Engine engine, long start, long allocatedBefore)
+	{
+		long time = System.nanoTime() - start;
+		long allocated = (allocatedBefore < 0) ? -1 : allocated() - allocatedBefore;
+
+		turns.increment();
+		spidersMoved.add(engine.turnMoves);
+		spidersSpawned.add(engine.turnSpawns);
+		spidersKilled.add(engine.turnKills);
+		turnTime.record(time);
+
+		if (allocated >= 0)
+			turnAllocation.record(allocated);
+
+		if (!TURN_EVENT.isEnabled())
+			return;
+
+		GameEvents.Turn event = new GameEvents.Turn();
+
+		if (event.shouldCommit())
+		{
+			event.turn = engine.turn;
+			event.time = time;
+			event.spiders = engine.swarm.size;
+			event.moved = engine.turnMoves;
+			event.spawned = engine.turnSpawns;
+			event.killed = engine.turnKills;
+			event.allocated = allocated;
+			event.commit();
+		}
+
+	}// turn
+
+	void board(long start)
+	{
+		record(boardTime, BOARD, start);
+
+	}// board
+
+	void menu(long start)
+	{
+		record(menuTime, MENU, start);
+
+	}// menu
+
+	void output(long start)
+	{
+		record(outputTime, OUTPUT, start);
+
+	}// output
+
+	void animation(long start)
+	{
+		record(animationTime, ANIMATION, start);
+
+	}// animation
+
+	/**
+	record
+	Records the time since the given nanoTime in a histogram and
+	as a Draw event of the given kind
+	*/
+	void record(Histogram histogram, String what, long start)
+	{
+		long time = System.nanoTime() - start;
+
+		histogram.record(time);
+
+		if (!DRAW_EVENT.isEnabled())
+			return;
+
+		GameEvents.Draw event = new GameEvents.Draw();
+
+		if (event.shouldCommit())
+		{
+			event.what = what;
+			event.time = time;
+			event.commit();
+		}
+
+	}// record
+
+	public long getTurns() { return turns.sum(); }
+	public long getSpidersMoved() { return spidersMoved.sum(); }
+	public long getSpidersSpawned() { return spidersSpawned.sum(); }
+	public long getSpidersKilled() { return spidersKilled.sum(); }
+
+	public Histogram.Summary getTurnTime() { return turnTime.summary(); }
+	public Histogram.Summary getTurnAllocation() { return turnAllocation.summary(); }
+	public Histogram.Summary getBoardTime() { return boardTime.summary(); }
+	public Histogram.Summary getMenuTime() { return menuTime.summary(); }
+	public Histogram.Summary getOutputTime() { return outputTime.summary(); }
+	public Histogram.Summary getAnimationTime() { return animationTime.summary(); }
+
+	public void reset()
+	{
+		turns.reset();
+		spidersMoved.reset();
+		spidersSpawned.reset();
+		spidersKilled.reset();
+
+		turnTime.reset();
+		turnAllocation.reset();
+		boardTime.reset();
+		menuTime.reset();
+		outputTime.reset();
+		animationTime.reset();
+
+	}// reset
+
+	public String toString()
+	{
+		return String.format("%d turns, %d spiders moved %d spawned %d killed%n"
+				+ "turn ns: %s%nturn bytes: %s%nboard ns: %s%nmenu ns: %s%noutput ns: %s%nanimation ns: %s",
+				getTurns(), getSpidersMoved(), getSpidersSpawned(), getSpidersKilled(),
+				getTurnTime(), getTurnAllocation(), getBoardTime(), getMenuTime(), getOutputTime(), getAnimationTime());
+
+	}// toString
+
+}// GameMetrics
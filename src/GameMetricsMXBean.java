@@ -0,0 +1,22 @@
+/**
+GameMetricsMXBean
+What GameMetrics shows over JMX, as song:type=GameMetrics. Times are
+in nanoseconds and allocations in bytes
+*/
+public interface GameMetricsMXBean
+{
+	long getTurns();
+	long getSpidersMoved();
+	long getSpidersSpawned();
+	long getSpidersKilled();
+
+	Histogram.Summary getTurnTime();
+	Histogram.Summary getTurnAllocation();
+	Histogram.Summary getBoardTime();
+	Histogram.Summary getMenuTime();
+	Histogram.Summary getOutputTime();
+	Histogram.Summary getAnimationTime();
+
+	void reset();
+
+}// GameMetricsMXBean
@@ -0,0 +1,171 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+Histogram
+Counts of recorded values, nanoseconds or bytes, in buckets that grow
+with the values the way an HDR histogram's do: one per value below
+LINEAR, then SUB_BUCKETS to every doubling, so any value is known to
+within about 6% whatever its size, in a fixed few kilobytes. Values
+are recorded from any number of threads at once without locking
+*/
+public class Histogram
+{
+	static final int SUB_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BITS; // buckets to a doubling
+	static final int LINEAR = 2*SUB_BUCKETS; // values with a bucket each
+	static final int BUCKETS = (63 - SUB_BITS)*SUB_BUCKETS + LINEAR;
+
+	AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	LongAdder count = new LongAdder();
+	LongAdder sum = new LongAdder();
+	AtomicLong max = new AtomicLong();
+
+	/**
+	record
+	Counts one value, negative ones as 0
+	*/
+	void record(long value)
+	{
+		value = Math.max(value, 0);
+
+		counts.getAndIncrement(bucket(value));
+		count.increment();
+		sum.add(value);
+
+		for (long most = max.get(); value > most; most = max.get())
+			if (max.compareAndSet(most, value))
+				break;
+
+	}// record
+
+	/**
+	bucket
+	Bucket holding the given value: the value itself below LINEAR,
+	otherwise its top SUB_BITS + 1 bits and how far they were shifted
+	*/
+	static int bucket(long value)
+	{
+		if (value < LINEAR)
+			return (int)value;
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+
+		return shift*SUB_BUCKETS + (int)(value >>> shift);
+
+	}// bucket
+
+	/**
+	highest
+	Largest value that falls in the given bucket
+	*/
+	static long highest(int bucket)
+	{
+		if (bucket < LINEAR)
+			return bucket;
+
+		int shift = bucket/SUB_BUCKETS - 1;
+		long lowest = (long)(bucket%SUB_BUCKETS + SUB_BUCKETS) << shift;
+
+		return lowest + (1L << shift) - 1;
+
+	}// highest
+
+	/**
+	summary
+	Count, mean, percentiles and maximum of the values recorded so far
+	*/
+	Summary summary()
+	{
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+
+		long most = max.get();
+		Summary summary = new Summary();
+
+		summary.count = total;
+		summary.mean = (total == 0) ? 0 : (double)sum.sum()/count.sum();
+		summary.p50 = percentile(snapshot, total, most, 0.5);
+		summary.p90 = percentile(snapshot, total, most, 0.9);
+		summary.p99 = percentile(snapshot, total, most, 0.99);
+		summary.p999 = percentile(snapshot, total, most, 0.999);
+		summary.max = most;
+
+		return summary;
+
+	}// summary
+
+	/**
+	percentile
+	Value below which the given fraction of the counted values fall,
+	as the top of the bucket it lands in
+	*/
+	static long percentile(long[] counts, long total, long max, double fraction)
+	{
+		long rank = Math.max((long)Math.ceil(fraction*total), 1);
+		long seen = 0;
+
+		for (int i = 0; i < counts.length; i++)
+		{
+			seen += counts[i];
+
+			if (seen >= rank)
+				return Math.min(highest(i), max);
+		}
+
+		return 0;
+
+	}// percentile
+
+	/**
+	reset
+	Forgets the values recorded so far. Values recorded meanwhile
+	may be half forgotten
+	*/
+	void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+
+		count.reset();
+		sum.reset();
+		max.set(0);
+
+	}// reset
+
+	/**
+	Summary
+	What a histogram held when it was summed up. Its getters make it
+	an open type, so it is shown as such over JMX
+	*/
+	public static class Summary
+	{
+		long count;
+		double mean;
+		long p50, p90, p99, p999, max;
+
+		public long getCount() { return count; }
+		public double getMean() { return mean; }
+		public long getP50() { return p50; }
+		public long getP90() { return p90; }
+		public long getP99() { return p99; }
+		public long getP999() { return p999; }
+		public long getMax() { return max; }
+
+		public String toString()
+		{
+			return String.format("n %d mean %.0f p50 %d p90 %d p99 %d p99.9 %d max %d",
+					count, mean, p50, p90, p99, p999, max);
+
+		}// toString
+
+	}// Summary
+
+}// Histogram
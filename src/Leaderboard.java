@@ -0,0 +1,531 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+Leaderboard
+The best runs ever finished, kept in a file of fixed-size records
+that is only ever appended to, each record checked by a CRC. A crash
+can at worst leave a torn record at the end, which is cut off when
+the file is next opened.
+Runs are handed to a writer thread through a lock-free queue, so any
+number of sessions can finish at once without waiting on each other
+or on the disk. The writer appends the runs in batches, one write and
+one sync each, and merges them into the sorted best runs, which
+readers see as an array that is replaced, never changed.
+Only the best KEPT runs are ever shown, so once the file holds many
+more records it is compacted down to those: written anew beside it
+and moved over it in one step.
+One process at a time keeps the file, holding a lock on a file beside
+it for as long as it runs; any other keeps its runs in memory only
+*/
+public class Leaderboard
+{
+	static final int KEPT = 100; // runs ranked
+	static final int COMPACT_AT = 4*KEPT; // records in the file that set off a compaction
+	static final int BATCH = 256; // runs written at once at most
+
+	static final int MAGIC = 0x534f4e47; // "SONG", opening every record
+	static final int RECORD = 44; // bytes in a record
+	static final int REVERSE_CONTROLS = 1; // flag of a run played with them
+
+	static final Run[] NONE = new Run[0];
+
+	/**
+	Run
+	A finished game: its score, turns and time in milliseconds, the
+	seed it was played from, whether the controls were reversed and
+	when it ended
+	*/
+	static class Run
+	{
+		int score;
+		int turns;
+		long time;
+		long seed;
+		boolean reverseControls;
+		long finished; // milliseconds since the epoch
+
+		Run(int score, int turns, long time, long seed, boolean reverseControls)
+		{
+			this.score = score;
+			this.turns = turns;
+			this.time = time;
+			this.seed = seed;
+			this.reverseControls = reverseControls;
+
+			finished = System.currentTimeMillis();
+
+		}// Run constructor
+
+		/**
+		beats
+		Whether this run ranks above the given one: more points, or
+		as many in less time, or in as much time earlier
+		*/
+		boolean beats(Run other)
+		{
+			if (score != other.score)
+				return score > other.score;
+
+			if (time != other.time)
+				return time < other.time;
+
+			return finished < other.finished;
+
+		}// beats
+
+	}// Run
+
+	Path path; // file of the runs, or null to keep them in memory only
+	FileChannel file;
+	FileChannel lockFile; // beside the file, locked while this process keeps it
+	FileLock lock;
+	int records; // records in the file
+
+	volatile Run[] best; // best runs, best first, at most KEPT of them
+
+	ConcurrentLinkedQueue<Run> queue; // runs not written yet
+	Thread writer;
+	volatile boolean closed;
+
+	ByteBuffer buffer; // records being written, used by the writer only
+	CRC32 crc;
+
+	Leaderboard(Path path)
+	{
+		this.path = path;
+
+		best = NONE;
+		queue = new ConcurrentLinkedQueue<Run>();
+		buffer = ByteBuffer.allocate(BATCH*RECORD);
+		crc = new CRC32();
+
+		writer = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				write();
+
+			}// run
+		}, "leaderboard writer");
+
+		writer.setDaemon(true);
+
+	}// Leaderboard constructor
+
+	/**
+	open
+	Leaderboard kept in the file the settings name, read back first,
+	or kept in memory only if none is named or it cannot be used.
+	Whatever was not written yet is written when the program exits
+	*/
+	static Leaderboard open(Config config)
+	{
+		Leaderboard leaderboard;
+
+		try
+		{
+			leaderboard = new Leaderboard(config.leaderboard.isEmpty() ? null : Path.of(config.leaderboard));
+			leaderboard.load();
+		}
+		catch (IOException e)
+		{
+			System.err.println("scores are not saved: " + e);
+			leaderboard = new Leaderboard(null);
+		}
+
+		leaderboard.writer.start();
+
+		final Leaderboard closing = leaderboard;
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+		{
+			public void run()
+			{
+				closing.close();
+
+			}// run
+		}, "leaderboard close"));
+
+		return leaderboard;
+
+	}// open
+
+	/**
+	load
+	Takes the lock on the file, reads the runs in it, cutting off
+	what follows the last whole record that checks out, and opens it
+	for appending. Nothing is left open if it fails
+	*/
+	void load() throws IOException
+	{
+		if (path == null)
+			return;
+
+		try
+		{
+			// the lock is on a file of its own, since compacting
+			// replaces the file of the runs
+			lockFile = FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+			try
+			{
+				lock = lockFile.tryLock();
+			}
+			catch (OverlappingFileLockException e)
+			{
+				lock = null;
+			}
+
+			if (lock == null)
+				throw new IOException(path + " is kept by another process");
+
+			file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			readRuns();
+		}
+		catch (IOException e)
+		{
+			release();
+			throw e;
+		}
+
+	}// load
+
+	/**
+	readRuns
+	Reads the runs in the file and cuts off what follows the last
+	whole record that checks out
+	*/
+	void readRuns() throws IOException
+	{
+		// compaction keeps the file small enough to read at once
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+		Run[] runs = new Run[64];
+		records = 0;
+
+		while (in.remaining() >= RECORD)
+		{
+			Run run = read(in);
+
+			if (run == null)
+				break;
+
+			if (records == runs.length)
+				runs = Arrays.copyOf(runs, 2*records);
+
+			runs[records++] = run;
+		}
+
+		long end = (long)records*RECORD; // of the last good record
+
+		if (end < file.size())
+			file.truncate(end);
+
+		best = merge(NONE, runs, records);
+
+	}// readRuns
+
+	/**
+	add
+	Hands a finished run to the writer and returns the rank it takes
+	among the best runs, from 1, or 0 if it is not among them. Never
+	waits; the rank is that of the runs known at the time
+	*/
+	int add(Run run)
+	{
+		queue.add(run);
+		LockSupport.unpark(writer);
+
+		return rank(run);
+
+	}// add
+
+	/**
+	rank
+	Rank the given run would take among the best runs, from 1,
+	or 0 if it would not be among them
+	*/
+	int rank(Run run)
+	{
+		Run[] ranked = best;
+		int rank = 1;
+
+		for (Run other : ranked)
+			if (other != run && other.beats(run))
+				rank++;
+
+		return (rank <= KEPT) ? rank : 0;
+
+	}// rank
+
+	/**
+	best
+	The best runs, best first. The array is never changed
+	*/
+	Run[] best()
+	{
+		return best;
+
+	}// best
+
+	/**
+	write
+	The writer's loop: writes and ranks the queued runs until the
+	leaderboard is closed and nothing is left
+	*/
+	void write()
+	{
+		Run[] batch = new Run[BATCH];
+
+		while (true)
+		{
+			int count = 0;
+			Run run;
+
+			while (count < BATCH && (run = queue.poll()) != null)
+				batch[count++] = run;
+
+			if (count > 0)
+			{
+				append(batch, count);
+				best = merge(best, batch, count);
+				Arrays.fill(batch, null);
+			}
+			else if (closed)
+				return;
+			else
+				LockSupport.park(this);
+		}
+
+	}// write
+
+	/**
+	append
+	Adds runs to the end of the file and syncs it, compacting the
+	file once it has grown enough. A failing disk stops the saving
+	but not the ranking
+	*/
+	void append(Run[] runs, int count)
+	{
+		if (file == null)
+			return;
+
+		try
+		{
+			buffer.clear();
+
+			for (int i = 0; i < count; i++)
+				put(buffer, runs[i]);
+
+			buffer.flip();
+
+			while (buffer.hasRemaining())
+				file.write(buffer);
+
+			file.force(false);
+			records += count;
+
+			if (records >= COMPACT_AT)
+				compact(merge(best, runs, count));
+		}
+		catch (IOException e)
+		{
+			System.err.println("scores are no longer saved: " + e);
+			file = null;
+		}
+
+	}// append
+
+	/**
+	compact
+	Replaces the file with one holding only the given runs. The new
+	file is synced before it takes the old one's place, and the
+	directory after, so either one or the other is found after a
+	crash
+	*/
+	void compact(Run[] runs) throws IOException
+	{
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+		try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+		{
+			for (int start = 0; start < runs.length; start += BATCH)
+			{
+				buffer.clear();
+
+				for (int i = start; i < Math.min(start + BATCH, runs.length); i++)
+					put(buffer, runs[i]);
+
+				buffer.flip();
+
+				while (buffer.hasRemaining())
+					out.write(buffer);
+			}
+
+			out.force(false);
+		}
+
+		file.close();
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		syncDirectory();
+
+		file = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		records = runs.length;
+
+	}// compact
+
+	/**
+	syncDirectory
+	Syncs the directory of the file, so that the move of a compacted
+	file over it outlasts a crash
+	*/
+	void syncDirectory() throws IOException
+	{
+		Path directory = path.toAbsolutePath().getParent();
+
+		try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ))
+		{
+			channel.force(true);
+		}
+		catch (IOException e)
+		{
+			// not every system lets a directory be opened or synced;
+			// the move itself still went through
+		}
+
+	}// syncDirectory
+
+	/**
+	merge
+	The best of the given ranked runs and the given new ones, as a
+	new array, best first
+	*/
+	static Run[] merge(Run[] ranked, Run[] runs, int count)
+	{
+		Run[] all = Arrays.copyOf(ranked, ranked.length + count);
+		int size = ranked.length;
+
+		// insertion keeps it sorted; batches are small next to KEPT
+		for (int i = 0; i < count; i++)
+		{
+			int at = size++;
+
+			while (at > 0 && runs[i].beats(all[at - 1]))
+			{
+				all[at] = all[at - 1];
+				at--;
+			}
+
+			all[at] = runs[i];
+		}
+
+		return Arrays.copyOf(all, Math.min(size, KEPT));
+
+	}// merge
+
+	/**
+	put
+	Writes a run as a record
+	*/
+	void put(ByteBuffer out, Run run)
+	{
+		int start = out.position();
+
+		out.putInt(MAGIC);
+		out.putInt(run.score);
+		out.putInt(run.turns);
+		out.putLong(run.time);
+		out.putLong(run.seed);
+		out.putLong(run.finished);
+		out.putInt(run.reverseControls ? REVERSE_CONTROLS : 0);
+
+		crc.reset();
+		crc.update(out.array(), start, RECORD - 4);
+		out.putInt((int)crc.getValue());
+
+	}// put
+
+	/**
+	read
+	Reads a record as a run, or returns null if it does not check out
+	*/
+	Run read(ByteBuffer in)
+	{
+		int start = in.position();
+
+		crc.reset();
+		crc.update(in.array(), start, RECORD - 4);
+
+		if (in.getInt() != MAGIC)
+			return null;
+
+		Run run = new Run(in.getInt(), in.getInt(), in.getLong(), in.getLong(), false);
+		run.finished = in.getLong();
+		run.reverseControls = (in.getInt() & REVERSE_CONTROLS) != 0;
+
+		return (in.getInt() == (int)crc.getValue()) ? run : null;
+
+	}// read
+
+	/**
+	close
+	Writes whatever is still queued, closes the file and lets go of
+	its lock
+	*/
+	void close()
+	{
+		closed = true;
+		LockSupport.unpark(writer);
+
+		try
+		{
+			writer.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		release();
+
+	}// close
+
+	/**
+	release
+	Closes the file and lets go of its lock, if they are open
+	*/
+	void release()
+	{
+		try
+		{
+			if (file != null)
+				file.close();
+
+			// closing the channel lets go of the lock
+			if (lockFile != null)
+				lockFile.close();
+		}
+		catch (IOException e)
+		{
+		}
+
+		file = null;
+		lockFile = null;
+		lock = null;
+
+	}// release
+
+}// Leaderboard
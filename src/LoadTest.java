@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+LoadTest
+Plays many simulated clients against a game server at once and
+reports the commands answered per second and how long the answers
+took. Each client connects, waits for its first frame, then presses
+random keys, waiting for the frame answering each key before
+pressing the next. The keys find their way through the menus as
+well, and a client that picks Exit connects again. Unless given a
+server to connect to, one is started in this JVM on a free local
+port and its metrics are reported as well.
+Run with: java -cp target/classes LoadTest [clients] [seconds] [host:port]
+*/
+public class LoadTest
+{
+	static final int DEFAULT_CLIENTS = 1000;
+	static final int DEFAULT_SECONDS = 10;
+	static final String KEYS = "wasd ijkl\r\033";
+	static final byte[] FRAME_END = Terminal.FRAME_END.getBytes();
+
+	/**
+	Client
+	One simulated player, keeping the response time of every key
+	it pressed, in nanoseconds
+	*/
+	static class Client implements Runnable
+	{
+		SocketAddress server;
+		long deadline;
+		SplitMix dice;
+
+		long[] latencies = new long[1024];
+		int count;
+		int sessions;
+		boolean failed;
+
+		ByteBuffer in = ByteBuffer.allocate(4096);
+		ByteBuffer key = ByteBuffer.allocate(1);
+
+		Client(SocketAddress server, long deadline, long seed)
+		{
+			this.server = server;
+			this.deadline = deadline;
+			dice = new SplitMix(seed);
+
+		}// Client constructor
+
+		public void run()
+		{
+			while (System.nanoTime() < deadline)
+			{
+				SocketChannel channel;
+
+				try
+				{
+					channel = SocketChannel.open(server);
+					sessions++;
+				}
+				catch (IOException e)
+				{
+					failed = true;
+					return;
+				}
+
+				try (channel)
+				{
+					awaitFrame(channel);
+
+					while (System.nanoTime() < deadline)
+					{
+						key.clear();
+						key.put((byte)KEYS.charAt(dice.nextInt(KEYS.length())));
+						key.flip();
+
+						long start = System.nanoTime();
+
+						channel.write(key);
+						awaitFrame(channel);
+
+						if (count == latencies.length)
+							latencies = Arrays.copyOf(latencies, 2*count);
+
+						latencies[count++] = System.nanoTime() - start;
+					}
+				}
+				catch (IOException e)
+				{
+					// the server closed the session after Exit was picked
+				}
+			}
+
+		}// run
+
+		/**
+		awaitFrame
+		Reads until the end of a frame
+		*/
+		void awaitFrame(SocketChannel channel) throws IOException
+		{
+			int matched = 0;
+
+			while (true)
+			{
+				in.clear();
+
+				if (channel.read(in) < 0)
+					throw new IOException("server closed the connection");
+
+				in.flip();
+
+				while (in.hasRemaining())
+				{
+					byte b = in.get();
+
+					if (b == FRAME_END[matched])
+						matched++;
+					else
+						matched = (b == FRAME_END[0]) ? 1 : 0;
+
+					if (matched == FRAME_END.length)
+						return;
+				}
+			}
+
+		}// awaitFrame
+
+	}// Client
+
+	public static void main(String[] args) throws Exception
+	{
+		int clients = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+		int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+
+		Server server = null;
+		SocketAddress address;
+
+		if (args.length > 2)
+		{
+			String target = args[2];
+			int colon = target.lastIndexOf(':');
+			address = new InetSocketAddress(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)));
+		}
+		else
+		{
+			Config config = new Config();
+			config.seed = 42;
+			config.leaderboard = ""; // the runs of the test are not worth keeping
+			config.replays = "";
+
+			final Server local = Server.open(config);
+			server = local;
+			address = new InetSocketAddress("localhost", ((InetSocketAddress)local.listener.getLocalAddress()).getPort());
+
+			Thread acceptor = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					try
+					{
+						local.run();
+					}
+					catch (IOException e)
+					{
+						e.printStackTrace();
+					}
+
+				}// run
+			}, "server");
+
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		long start = System.nanoTime();
+		long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+		Client[] simulated = new Client[clients];
+		ExecutorService threads = Server.threadPerTask();
+
+		for (int i = 0; i < clients; i++)
+		{
+			simulated[i] = new Client(address, deadline, i);
+			threads.execute(simulated[i]);
+		}
+
+		threads.shutdown();
+		threads.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+
+		double elapsed = (System.nanoTime() - start)/1e9;
+
+		// every response time, sorted for the percentiles
+		int total = 0;
+		int failures = 0;
+		int sessions = 0;
+
+		for (Client client : simulated)
+		{
+			total += client.count;
+			sessions += client.sessions;
+
+			if (client.failed)
+				failures++;
+		}
+
+		long[] all = new long[total];
+		int at = 0;
+
+		for (Client client : simulated)
+		{
+			System.arraycopy(client.latencies, 0, all, at, client.count);
+			at += client.count;
+		}
+
+		Arrays.sort(all);
+
+		System.out.printf("%d clients, %d failed, %d sessions, %d keys in %.1f s, %.0f keys/s%n",
+				clients, failures, sessions, total, elapsed, total/elapsed);
+
+		if (total > 0)
+			System.out.printf("response time us: p50 %.0f  p90 %.0f  p99 %.0f  p99.9 %.0f  max %.0f%n",
+					percentile(all, 0.5), percentile(all, 0.9), percentile(all, 0.99),
+					percentile(all, 0.999), all[total - 1]/1e3);
+
+		if (server != null)
+		{
+			System.out.println(server.metrics);
+			server.close();
+		}
+
+	}// main
+
+	/**
+	percentile
+	Value below which the given fraction of the sorted values fall,
+	in microseconds
+	*/
+	static double percentile(long[] sorted, double fraction)
+	{
+		int index = (int)Math.ceil(fraction*sorted.length) - 1;
+
+		return sorted[Math.max(index, 0)]/1e3;
+
+	}// percentile
+
+}// LoadTest
@@ -0,0 +1,858 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+Replay
+A game recorded as its settings and seed and the commands played,
+which is all it takes to play it out again the same way. Each
+command is one varint: the milliseconds since the one before shifted
+over the 4 bits of the command, so most take two bytes. A game that
+was lost ends with the turn, score and hash it ended on, which a
+replay has to match. Commands are gathered in a buffer and written
+to the file when it fills up and when the recording is closed.
+Every KEYFRAME_TURNS turns or so the recording also holds the whole
+state of the game, so a replay can start from the nearest keyframe
+rather than from the first turn. A keyframe holds the board as the
+cells taken or freed since the keyframe before, except every
+STANDALONE-th, which holds the taken cells themselves, so seeking
+reads a few keyframes at most. The recording ends with an index of
+the turns and file offsets of its keyframes; one cut short by a crash
+is searched for them instead.
+Play a recording back with:
+java -cp target/classes Replay FILE [--seek=TURN] [--real-time]
+at once, checking how it ends, or from the given turn, or at the pace
+it was played, drawn on the terminal
+*/
+public class Replay
+{
+	static final int MAGIC = 0x534f4e52; // "SONR", opening every replay
+	static final int VERSION = 2;
+	static final int COMMAND_BITS = 4;
+	static final int END = (1 << COMMAND_BITS) - 1; // code of the end of a lost game, not a command
+	static final int KEYFRAME = END - 1; // code of a keyframe, not a command
+	static final int INDEX = END - 2; // code of the index, after the last entry
+	static final int KEYFRAME_TURNS = 100; // turns between keyframes, at least
+	static final int STANDALONE = 16; // keyframes from one that is not a delta to the next
+	static final int INDEX_MAGIC = 0x494e4458; // "INDX", closing every index
+	static final int FOOTER = 12; // bytes of the index's offset and INDEX_MAGIC
+	static final int BUFFER = 4096;
+	static final int MAX_ENTRY = 64; // bytes an entry takes at most, but for the cells of a keyframe
+	static final String EXTENSION = ".replay";
+
+	// The game recorded
+	int rows;
+	int cols;
+	int spawnFrequency;
+	int spawnQuantity;
+	int reloadTime;
+	long seed;
+
+	// Keyframes, by turn
+	int keyframes;
+	int[] keyTurns;
+	long[] keyOffsets; // in the file, of each keyframe's entry
+
+	// Recording, used by the thread playing the game and, once, by
+	// whoever closes it
+	FileChannel file; // or null if the game is not written
+	ByteBuffer buffer;
+	long written; // bytes of the file written so far
+	long last; // milliseconds when the last command was played
+	int nextKeyframe; // turn from which the next keyframe is taken
+	long[] taken; // cells taken at the last keyframe, laid out like Engine.floorBits
+
+	// Read back
+	ByteBuffer data; // the whole file
+	int start; // offset of the first entry
+	int end; // offset the entries stop at
+	ByteBuffer cursor; // the entries, at the one to play next
+	long delay; // milliseconds before the command last read
+	int played; // commands played from the recording so far
+	boolean lost; // whether the game was played to its end
+	int turn, score;
+	long hash;
+
+	// State of the keyframe last read
+	int keyTurn, keyScore;
+	long keyRandom;
+	int keyRow, keyCol, keyReady;
+
+	Replay(Engine engine)
+	{
+		this();
+
+		rows = engine.rows;
+		cols = engine.cols;
+		spawnFrequency = engine.spawnFrequency;
+		spawnQuantity = engine.spawnQuantity;
+		reloadTime = engine.reloadTime;
+		seed = engine.seed;
+
+	}// Replay constructor
+
+	Replay()
+	{
+		keyframes = 0;
+		keyTurns = new int[16];
+		keyOffsets = new long[16];
+
+	}// Replay reading constructor
+
+	/**
+	record
+	Starts recording the given game, which no command was played in
+	yet, in a new file in the directory the settings name. If none is
+	named or the file cannot be made, the recording takes the
+	commands and writes nothing
+	*/
+	static Replay record(Config config, Engine engine)
+	{
+		Replay replay = new Replay(engine);
+		replay.last = System.nanoTime()/1_000_000;
+		replay.nextKeyframe = KEYFRAME_TURNS;
+
+		if (config.replays.isEmpty())
+			return replay;
+
+		try
+		{
+			Path directory = Path.of(config.replays);
+			Files.createDirectories(directory);
+
+			Path path = directory.resolve(System.currentTimeMillis() + "-" + Long.toHexString(engine.seed) + EXTENSION);
+			replay.file = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+			replay.buffer = ByteBuffer.allocate(BUFFER);
+			replay.header();
+		}
+		catch (IOException e)
+		{
+			System.err.println("game is not recorded: " + e);
+			replay.file = null;
+		}
+
+		return replay;
+
+	}// record
+
+	void header()
+	{
+		buffer.putInt(MAGIC);
+		buffer.put((byte)VERSION);
+		putVarint(buffer, rows);
+		putVarint(buffer, cols);
+		putVarint(buffer, spawnFrequency);
+		putVarint(buffer, spawnQuantity);
+		putVarint(buffer, reloadTime);
+		buffer.putLong(seed);
+
+	}// header
+
+	/**
+	add
+	Records a command that was just played in the given game, and
+	the game itself if a keyframe is due. Keyframes are only taken
+	with no arrow flying, in a state a replay goes through
+	*/
+	synchronized void add(int command, Engine engine)
+	{
+		if (file == null)
+			return;
+
+		long now = System.nanoTime()/1_000_000;
+
+		putVarint(buffer, ((now - last) << COMMAND_BITS) | command);
+		last = now;
+
+		if (buffer.remaining() < MAX_ENTRY)
+			write();
+
+		if (engine.turn >= nextKeyframe && !engine.arrowFlying && !engine.over)
+			keyframe(engine);
+
+	}// add
+
+	/**
+	keyframe
+	Records the state of the given game: its counters, its rolls to
+	come, the player and the cells that changed hands since the last
+	keyframe, as the gaps between them in cell order. The spiders
+	are those on the taken cells but the player's
+	*/
+	void keyframe(Engine engine)
+	{
+		if (taken == null)
+			taken = new long[engine.floorBits.length];
+
+		if (buffer.remaining() < MAX_ENTRY)
+			write();
+
+		boolean standalone = (keyframes%STANDALONE == 0);
+		long lastMask = (cols%64 == 0) ? -1L : (1L << cols) - 1;
+		int words = engine.words;
+
+		addKeyframe(engine.turn, written + buffer.position());
+		nextKeyframe = engine.turn + KEYFRAME_TURNS;
+
+		int changed = 0;
+
+		for (int w = 0; w < taken.length; w++)
+		{
+			long now = ~engine.floorBits[w] & ((w%words == words - 1) ? lastMask : -1L);
+
+			changed += Long.bitCount(standalone ? now : now ^ taken[w]);
+		}
+
+		putVarint(buffer, KEYFRAME);
+		putVarint(buffer, engine.turn);
+		putVarint(buffer, engine.score);
+		buffer.putLong(engine.random.state);
+		putVarint(buffer, engine.player.row);
+		putVarint(buffer, engine.player.col);
+		putVarint(buffer, engine.player.turnsToReady);
+		putVarint(buffer, changed);
+
+		int previous = -1;
+
+		for (int w = 0; w < taken.length; w++)
+		{
+			long now = ~engine.floorBits[w] & ((w%words == words - 1) ? lastMask : -1L);
+			long bits = standalone ? now : now ^ taken[w];
+			int base = (w/words)*cols + (w%words)*64;
+
+			taken[w] = now;
+
+			for (; bits != 0; bits &= bits - 1)
+			{
+				int cell = base + Long.numberOfTrailingZeros(bits);
+
+				putVarint(buffer, cell - previous);
+				previous = cell;
+
+				if (buffer.remaining() < MAX_ENTRY)
+					write();
+			}
+		}
+
+	}// keyframe
+
+	/**
+	finish
+	Closes the recording of the given game, ending it with how the
+	game ended if it is over
+	*/
+	synchronized void finish(Engine engine)
+	{
+		if (file == null)
+			return;
+
+		if (engine.over)
+		{
+			putVarint(buffer, END);
+			putVarint(buffer, engine.turn);
+			putVarint(buffer, engine.score);
+			buffer.putLong(engine.hash());
+		}
+
+		close();
+
+	}// finish
+
+	/**
+	close
+	Writes what is left of the recording and its index and closes
+	its file, as for a game that was left before its end
+	*/
+	synchronized void close()
+	{
+		if (file == null)
+			return;
+
+		long index = written + buffer.position();
+
+		putVarint(buffer, INDEX);
+		putVarint(buffer, keyframes);
+
+		for (int k = 0; k < keyframes; k++)
+		{
+			if (buffer.remaining() < MAX_ENTRY)
+				write();
+
+			putVarint(buffer, keyTurns[k] - ((k > 0) ? keyTurns[k - 1] : 0));
+			putVarint(buffer, keyOffsets[k] - ((k > 0) ? keyOffsets[k - 1] : 0));
+		}
+
+		if (buffer.remaining() < MAX_ENTRY)
+			write();
+
+		buffer.putLong(index);
+		buffer.putInt(INDEX_MAGIC);
+		write();
+
+		try
+		{
+			if (file != null)
+				file.close();
+		}
+		catch (IOException e)
+		{
+		}
+
+		file = null;
+
+	}// close
+
+	/**
+	write
+	Empties the buffer into the file. A failing disk stops the
+	recording but not the game
+	*/
+	void write()
+	{
+		buffer.flip();
+
+		try
+		{
+			while (file != null && buffer.hasRemaining())
+				written += file.write(buffer);
+		}
+		catch (IOException e)
+		{
+			System.err.println("game is no longer recorded: " + e);
+
+			try
+			{
+				file.close();
+			}
+			catch (IOException ignored)
+			{
+			}
+
+			file = null;
+		}
+
+		buffer.clear();
+
+	}// write
+
+	/**
+	read
+	Reads a recording back, with the index of its keyframes. One cut
+	short, by a crash or a game that was left, gives the commands up
+	to the last whole one
+	*/
+	static Replay read(Path path) throws IOException
+	{
+		Replay replay = new Replay();
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+
+		try
+		{
+			if (in.getInt() != MAGIC)
+				throw new IOException(path + " is not a replay");
+
+			int version = in.get();
+
+			if (version != VERSION)
+				throw new IOException(path + " is a replay of version " + version + ", not " + VERSION);
+
+			replay.rows = (int)getVarint(in);
+			replay.cols = (int)getVarint(in);
+			replay.spawnFrequency = (int)getVarint(in);
+			replay.spawnQuantity = (int)getVarint(in);
+			replay.reloadTime = (int)getVarint(in);
+			replay.seed = in.getLong();
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException(path + " is not a replay");
+		}
+
+		replay.data = in;
+		replay.start = in.position();
+		replay.end = in.limit();
+
+		if (!replay.index())
+			replay.scan();
+
+		replay.cursor = in.duplicate().position(replay.start);
+
+		return replay;
+
+	}// read
+
+	/**
+	index
+	Reads the index at the end of the recording, returning false if
+	there is none
+	*/
+	boolean index()
+	{
+		int limit = data.limit();
+
+		if (limit - FOOTER < start || data.getInt(limit - 4) != INDEX_MAGIC)
+			return false;
+
+		long at = data.getLong(limit - FOOTER);
+
+		if (at < start || at > limit - FOOTER)
+			return false;
+
+		try
+		{
+			ByteBuffer in = data.duplicate().position((int)at);
+
+			if (getVarint(in) != INDEX)
+				return false;
+
+			int count = (int)getVarint(in);
+
+			for (int k = 0; k < count; k++)
+				addKeyframe(keyTurn(k - 1) + (int)getVarint(in), keyOffset(k - 1) + getVarint(in));
+		}
+		catch (BufferUnderflowException e)
+		{
+			keyframes = 0;
+			return false;
+		}
+
+		end = (int)at;
+		return true;
+
+	}// index
+
+	/**
+	scan
+	Finds the keyframes by going through the entries, for a recording
+	without an index, and where its last whole entry ends
+	*/
+	void scan()
+	{
+		ByteBuffer in = data.duplicate().position(start);
+		int code;
+
+		while (true)
+		{
+			int at = in.position();
+
+			if ((code = next(in)) == END)
+				break;
+
+			if (code == KEYFRAME)
+				addKeyframe(keyTurn, at);
+		}
+
+		end = in.position();
+
+	}// scan
+
+	void addKeyframe(int turn, long offset)
+	{
+		if (keyframes == keyTurns.length)
+		{
+			keyTurns = Arrays.copyOf(keyTurns, 2*keyframes);
+			keyOffsets = Arrays.copyOf(keyOffsets, 2*keyframes);
+		}
+
+		keyTurns[keyframes] = turn;
+		keyOffsets[keyframes] = offset;
+		keyframes++;
+
+	}// addKeyframe
+
+	int keyTurn(int k)
+	{
+		return (k < 0) ? 0 : keyTurns[k];
+
+	}// keyTurn
+
+	long keyOffset(int k)
+	{
+		return (k < 0) ? 0 : keyOffsets[k];
+
+	}// keyOffset
+
+	/**
+	next
+	Reads the entry at the given buffer's position and returns its
+	command, with the milliseconds before it in delay, or KEYFRAME
+	for a keyframe, read into the key fields, or END once there are
+	no more commands. The end of a lost game is read into turn, score
+	and hash. The buffer is left past the entry, or where the entries
+	end
+	*/
+	int next(ByteBuffer in)
+	{
+		int at = in.position();
+
+		if (at >= end)
+			return END;
+
+		try
+		{
+			long entry = getVarint(in);
+			int code = (int)(entry & END);
+
+			if (code == INDEX)
+			{
+				in.position(at);
+				return END;
+			}
+
+			if (code == KEYFRAME)
+				keyframe(in, null);
+			else if (code == END)
+			{
+				int lastTurn = (int)getVarint(in);
+				int lastScore = (int)getVarint(in);
+
+				hash = in.getLong();
+				turn = lastTurn;
+				score = lastScore;
+				lost = true;
+			}
+			else
+				delay = entry >>> COMMAND_BITS;
+
+			return code;
+		}
+		catch (BufferUnderflowException e)
+		{
+			// cut off in the middle of an entry
+			in.position(at);
+			return END;
+		}
+
+	}// next
+
+	/**
+	keyframe
+	Reads a keyframe, past its code, into the key fields, flipping
+	the cells that changed in the given taken cells unless they are
+	null
+	*/
+	void keyframe(ByteBuffer in, long[] cells)
+	{
+		keyTurn = (int)getVarint(in);
+		keyScore = (int)getVarint(in);
+		keyRandom = in.getLong();
+		keyRow = (int)getVarint(in);
+		keyCol = (int)getVarint(in);
+		keyReady = (int)getVarint(in);
+
+		int changed = (int)getVarint(in);
+		int words = (cols + 63) >>> 6;
+		int cell = -1;
+
+		for (int i = 0; i < changed; i++)
+		{
+			cell += (int)getVarint(in);
+
+			if (cells != null)
+			{
+				int r = cell/cols;
+				int c = cell - r*cols;
+
+				cells[r*words + (c >>> 6)] ^= 1L << c;
+			}
+		}
+
+	}// keyframe
+
+	/**
+	engine
+	New game with the recorded settings and seed
+	*/
+	Engine engine()
+	{
+		Config config = new Config();
+
+		Config.check("rows", rows, Config.MIN_SIZE, Config.MAX_SIZE);
+		Config.check("cols", cols, Config.MIN_SIZE, Config.MAX_SIZE);
+		Config.check("reload.time", reloadTime, 0, Config.MAX_RELOAD_TIME);
+
+		config.rows = rows;
+		config.cols = cols;
+		config.spawnFrequency = spawnFrequency;
+		config.spawnQuantity = spawnQuantity;
+		config.reloadTime = reloadTime;
+
+		return new Engine(config, seed);
+
+	}// engine
+
+	/**
+	play
+	Plays every recorded command, from the first, and returns the
+	game they played out
+	*/
+	Engine play()
+	{
+		Engine engine = engine();
+
+		cursor.position(start);
+		playUntil(engine, Integer.MAX_VALUE);
+
+		return engine;
+
+	}// play
+
+	/**
+	seek
+	Game as it was at the given turn, or at the end if the game did
+	not get that far. Starts from the last keyframe up to that turn,
+	so it plays KEYFRAME_TURNS turns at most. The cursor is left at
+	the next command
+	*/
+	Engine seek(int turn)
+	{
+		int k = keyframes - 1;
+
+		while (k >= 0 && keyTurns[k] > turn)
+			k--;
+
+		Engine engine;
+
+		if (k < 0)
+		{
+			engine = engine();
+			cursor.position(start);
+		}
+		else
+			engine = restore(k);
+
+		playUntil(engine, turn);
+
+		return engine;
+
+	}// seek
+
+	/**
+	restore
+	Game in the state of the given keyframe, built up from the last
+	standalone keyframe before it. The spiders are added in cell
+	order, which plays the same as any other. The cursor is left past
+	the keyframe
+	*/
+	Engine restore(int k)
+	{
+		int words = (cols + 63) >>> 6;
+		long[] cells = new long[rows*words];
+
+		for (int j = k - k%STANDALONE; j <= k; j++)
+		{
+			cursor.position((int)keyOffsets[j]);
+			getVarint(cursor);
+			keyframe(cursor, cells);
+		}
+
+		Engine engine = engine();
+
+		engine.player.moveTo(keyRow, keyCol);
+		engine.player.turnsToReady = keyReady;
+
+		for (int w = 0; w < cells.length; w++)
+		{
+			int base = (w/words)*cols + (w%words)*64;
+
+			for (long bits = cells[w]; bits != 0; bits &= bits - 1)
+			{
+				int cell = base + Long.numberOfTrailingZeros(bits);
+				int r = cell/cols;
+				int c = cell - r*cols;
+
+				if (r != keyRow || c != keyCol)
+					engine.addSpider(r, c);
+			}
+		}
+
+		engine.turn = keyTurn;
+		engine.score = keyScore;
+		engine.random.state = keyRandom;
+		engine.clearDirty();
+
+		return engine;
+
+	}// restore
+
+	/**
+	playUntil
+	Plays the commands from the cursor on until the given game gets
+	to the given turn or the commands run out
+	*/
+	void playUntil(Engine engine, int turn)
+	{
+		while (engine.turn < turn)
+		{
+			int code = next(cursor);
+
+			if (code == END)
+				return;
+
+			if (code != KEYFRAME)
+			{
+				engine.play(code);
+				played++;
+			}
+		}
+
+	}// playUntil
+
+	/**
+	show
+	Plays the commands from the cursor on in the given game at the
+	pace they were played, drawing the board on the terminal after
+	each
+	*/
+	void show(Engine engine)
+	{
+		BoardFrame frame = new BoardFrame(BoardFrame.DESIGN_SIZE, BoardFrame.DESIGN_SIZE);
+		Terminal terminal = new Terminal(BoardFrame.DESIGN_SIZE, BoardFrame.DESIGN_SIZE);
+		long due = System.nanoTime();
+
+		frame.drawScreen(engine);
+		TerminalGame.write(terminal.draw(frame.text));
+
+		for (int code; (code = next(cursor)) != END; )
+		{
+			if (code == KEYFRAME)
+				continue;
+
+			due += delay*1_000_000;
+
+			for (long wait; (wait = due - System.nanoTime()) > 0; )
+				LockSupport.parkNanos(wait);
+
+			engine.play(code);
+			played++;
+			frame.drawScreen(engine);
+			TerminalGame.write(terminal.draw(frame.text));
+		}
+
+		TerminalGame.write(terminal.leave());
+
+	}// show
+
+	/**
+	matches
+	Whether the given game, played out from the recording, ended the
+	way the recorded one did
+	*/
+	boolean matches(Engine engine)
+	{
+		return engine.over && engine.turn == turn && engine.score == score && engine.hash() == hash;
+
+	}// matches
+
+	static void putVarint(ByteBuffer out, long value)
+	{
+		while ((value & ~0x7fL) != 0)
+		{
+			out.put((byte)((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+
+		out.put((byte)value);
+
+	}// putVarint
+
+	static long getVarint(ByteBuffer in)
+	{
+		long value = 0;
+
+		for (int shift = 0; ; shift += 7)
+		{
+			byte b = in.get();
+			value |= (long)(b & 0x7f) << shift;
+
+			if (b >= 0)
+				return value;
+		}
+
+	}// getVarint
+
+	/**
+	main
+	Plays a recording back and reports whether it ends the way the
+	game did, exiting with 1 if it does not. Seeking to a turn shows
+	the board at that turn instead, or plays on from there
+	*/
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length == 0)
+		{
+			System.err.println("usage: java Replay FILE [--seek=TURN] [--real-time]");
+			System.exit(2);
+		}
+
+		Replay replay = read(Path.of(args[0]));
+		boolean realTime = false;
+		int seek = -1;
+
+		for (int i = 1; i < args.length; i++)
+		{
+			if (args[i].equals("--real-time"))
+				realTime = true;
+			else if (args[i].startsWith("--seek="))
+				seek = Config.number("seek", args[i].substring("--seek=".length()));
+			else
+				throw new IllegalArgumentException("unknown option " + args[i]);
+		}
+
+		Engine engine;
+
+		if (seek >= 0)
+		{
+			long start = System.nanoTime();
+			engine = replay.seek(seek);
+			long elapsed = System.nanoTime() - start;
+
+			System.out.printf("turn %d, score %d, %d spiders, found in %.1f us from %d keyframes%n",
+					engine.turn, engine.score, engine.swarm.size, elapsed/1e3, replay.keyframes);
+
+			if (!realTime)
+			{
+				BoardFrame frame = new BoardFrame(BoardFrame.DESIGN_SIZE, BoardFrame.DESIGN_SIZE);
+				frame.drawScreen(engine);
+				System.out.println(new String(frame.text));
+				return;
+			}
+
+			replay.show(engine);
+			System.out.printf("%d commands, %d turns, score %d%n", replay.played, engine.turn, engine.score);
+		}
+		else if (realTime)
+		{
+			// the cursor is still at the first command
+			engine = replay.engine();
+			replay.show(engine);
+			System.out.printf("%d commands, %d turns, score %d%n", replay.played, engine.turn, engine.score);
+		}
+		else
+		{
+			long start = System.nanoTime();
+			engine = replay.play();
+			long elapsed = System.nanoTime() - start;
+
+			System.out.printf("%d commands, %d turns, score %d, played in %.1f us%n", replay.played, engine.turn, engine.score, elapsed/1e3);
+		}
+
+		if (!replay.lost)
+			System.out.println("the recording has no end: the game was left or the recording cut short");
+		else if (replay.matches(engine))
+			System.out.println("ends as recorded");
+		else
+		{
+			System.out.printf("does not end as recorded: turn %d, score %d, hash %x%n", replay.turn, replay.score, replay.hash);
+			System.exit(1);
+		}
+
+	}// main
+
+}// Replay
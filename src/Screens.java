@@ -0,0 +1,365 @@
+import java.util.Arrays;
+
+/**
+Screens
+Registry of the menu screens of one view size, shared by every
+front-end. Each screen is drawn and fitted to the view once, with
+stand-in characters where its changing parts go: the cursor of each
+option, the score, the time, the rank and the best scores. The
+stand-ins are blanked and their places remembered, so showing a
+screen again only rewrites those few characters of its text, which
+stays the same array throughout
+*/
+public class Screens
+{
+	// Screens of the registry
+	static final int TITLE = 0;
+	static final int INFORMATION = 1;
+	static final int OPTIONS = 2;
+	static final int REVERSE_OPTIONS = 3; // options with the controls reversed
+	static final int PAUSE = 4;
+	static final int RESULTS = 5;
+	static final int COUNT = 6;
+
+	static final String[] TITLE_OPTIONS = {"Start", "How To Play", "Options", "Exit"};
+	static final String[] PAUSE_OPTIONS = {"Resume", "Restart", "Options", "How to Play", "Exit to Main Menu"};
+	static final String[] RESULT_OPTIONS = {"New Game", "Main Menu"};
+
+	// Stand-ins for the changing parts of a screen
+	static final char CURSOR = '\u0001';
+	static final char SCORE = '\u0002';
+	static final char TIME = '\u0003';
+	static final char BEST = '\u0004';
+	static final char RANK = '\u0005';
+
+	static final int BEST_SHOWN = 3; // best scores shown on the title screen
+	static final int POINTS_WIDTH = 3;
+
+	static final String BORDER = " -=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-=-";
+	static final String TOP = "/                                           \\\n";
+	static final String BLANK = "/                                           /\n";
+	static final String BOTTOM = "\\                                           /\n";
+
+	char[][] screens; // text of each screen, as last shown
+	int[][] cursors;  // offset of each option's cursor, by screen
+	int score; // offset of the score on the results screen
+	int time;  // offset of the time on the results screen
+	int rank;  // offset of the rank on the results screen
+	int[] best; // offsets of the digits of the best scores on the title screen
+
+	/**
+	Screens
+	Draws every screen for a view of the given size
+	*/
+	Screens(int viewRows, int viewCols)
+	{
+		screens = new char[COUNT][];
+		cursors = new int[COUNT][];
+
+		add(TITLE, designTitle(), viewRows, viewCols);
+		add(INFORMATION, designInformation(), viewRows, viewCols);
+		add(OPTIONS, designOptions(false), viewRows, viewCols);
+		add(REVERSE_OPTIONS, designOptions(true), viewRows, viewCols);
+		add(PAUSE, designPause(), viewRows, viewCols);
+		add(RESULTS, designResults(), viewRows, viewCols);
+
+		score = find(screens[RESULTS], SCORE)[0];
+		time = find(screens[RESULTS], TIME)[0];
+		rank = find(screens[RESULTS], RANK)[0];
+		best = find(screens[TITLE], BEST);
+
+	}// Screens constructor
+
+	/**
+	add
+	Fits a screen drawn for the design size to the view and finds
+	its option cursors
+	*/
+	void add(int screen, String design, int viewRows, int viewCols)
+	{
+		screens[screen] = BoardFrame.fit(design, viewRows, viewCols).toCharArray();
+		cursors[screen] = find(screens[screen], CURSOR);
+
+	}// add
+
+	/**
+	find
+	Offsets of the given stand-in in a screen, in order, each blanked
+	*/
+	static int[] find(char[] text, char standIn)
+	{
+		int[] found = new int[text.length];
+		int count = 0;
+
+		for (int i = 0; i < text.length; i++)
+		{
+			if (text[i] == standIn)
+			{
+				found[count++] = i;
+				text[i] = ' ';
+			}
+		}
+
+		return Arrays.copyOf(found, count);
+
+	}// find
+
+	/**
+	title
+	Title screen showing the scores of the given best runs
+	*/
+	char[] title(int index, Leaderboard.Run[] top)
+	{
+		char[] text = select(TITLE, index);
+
+		for (int i = 0; i < BEST_SHOWN; i++)
+			points(text, best[i*POINTS_WIDTH], (i < top.length) ? top[i].score : -1);
+
+		return text;
+
+	}// title
+
+	char[] information()
+	{
+		return screens[INFORMATION];
+
+	}// information
+
+	char[] options(boolean reverseControls)
+	{
+		return screens[reverseControls ? REVERSE_OPTIONS : OPTIONS];
+
+	}// options
+
+	char[] pause(int index)
+	{
+		return select(PAUSE, index);
+
+	}// pause
+
+	/**
+	results
+	Results screen showing the given score, time, in milliseconds,
+	and rank on the leaderboard, 0 if the run is not on it
+	*/
+	char[] results(int index, int points, long elapsedTime, int place)
+	{
+		char[] text = select(RESULTS, index);
+
+		Digits.write(text, score, POINTS_WIDTH, points);
+		Digits.time(text, time, elapsedTime);
+		points(text, rank, (place > 0) ? place : -1);
+
+		return text;
+
+	}// results
+
+	/**
+	points
+	Writes a number POINTS_WIDTH digits wide, or dashes if it is
+	negative, for a place where there is nothing to show
+	*/
+	static void points(char[] text, int offset, int value)
+	{
+		if (value >= 0)
+			Digits.write(text, offset, POINTS_WIDTH, value);
+		else
+			Arrays.fill(text, offset, offset + POINTS_WIDTH, '-');
+
+	}// points
+
+	/**
+	select
+	Points the cursor of a screen at the given option
+	*/
+	char[] select(int screen, int index)
+	{
+		char[] text = screens[screen];
+		int[] cursor = cursors[screen];
+
+		for (int i = 0; i < cursor.length; i++)
+			text[cursor[i]] = (i == index) ? '>' : ' ';
+
+		return text;
+
+	}// select
+
+	/**
+	designTitle
+	Title screen with the main menu
+	*/
+	static String designTitle()
+	{
+		String out = "";
+
+		out += BORDER + "\n";
+		out += TOP;
+		out += blanks(6);
+		out += "/          A Song of Birch and Silk         /\n";
+		out += "/        ____________________________       /\n";
+		out += blanks(3);
+		out += optionLines(TITLE_OPTIONS, 8);
+		out += blanks(1);
+		out += "/             Best: " + standIns(BEST, POINTS_WIDTH) + " " + standIns(BEST, POINTS_WIDTH) + " "
+				+ standIns(BEST, POINTS_WIDTH) + "             /\n";
+		out += blanks(2);
+		out += "\\                                 ver 1.0.0  /\n";
+		out += BORDER;
+
+		return out;
+
+	}// designTitle
+
+	/**
+	designInformation
+	How to play
+	*/
+	static String designInformation()
+	{
+		String out = "";
+
+		out += BORDER + "\n";
+		out += TOP;
+		out += "/         m <--- this is a spider           /\n";
+		out += "/         @ <--- this is you                /\n";
+		out += "/                                           /\n";
+		out += "/                                           /\n";
+		out += "/   - Move using [WASD]                     /\n";
+		out += "/                                           /\n";
+		out += "/   - Wait by pressing [SPACEBAR]           /\n";
+		out += "/                                           /\n";
+		out += "/   - Shoot using the [ARROW KEYS]          /\n";
+		out += "/                                           /\n";
+		out += "/   - [ESC] accesses the in-game menu       /\n";
+		out += "/                                           /\n";
+		out += "/   - You must have an arrow fully          /\n";
+		out += "/     drawn before you can shoot            /\n";
+		out += "/                                           /\n";
+		out += "/   - It takes [3 TURNS] to fully draw      /\n";
+		out += "/     an arrow while moving                 /\n";
+		out += "/                                           /\n";
+		out += "/   - But just [1 TURN] if you wait         /\n";
+		out += BOTTOM;
+		out += BORDER;
+
+		return out;
+
+	}// designInformation
+
+	/**
+	designOptions
+	Control scheme settings
+	*/
+	static String designOptions(boolean reverseControls)
+	{
+		String out = "";
+
+		out += BORDER + "\n";
+		out += TOP;
+		out += blanks(7);
+		out += "/   Control scheme: ";
+		out += ((reverseControls) ? "  Default  [Reverse]    /\n" : " [Default]  Reverse     /\n");
+		out += blanks(1);
+
+		if (reverseControls)
+		{
+			out += "/    Arrows are fired in the opposite       /\n";
+			out += "/    direction of the pressed arrow key     /\n";
+		}
+		else
+		{
+			out += "/    Arrows are fired in the same           /\n";
+			out += "/    direction of the pressed arrow key     /\n";
+		}
+
+		out += blanks(8);
+		out += BOTTOM;
+		out += BORDER;
+
+		return out;
+
+	}// designOptions
+
+	/**
+	designPause
+	In-game menu
+	*/
+	static String designPause()
+	{
+		String out = "";
+
+		out += BORDER + "\n";
+		out += TOP;
+		out += blanks(7);
+		out += optionLines(PAUSE_OPTIONS, 2);
+		out += blanks(7);
+		out += BOTTOM;
+		out += BORDER;
+
+		return out;
+
+	}// designPause
+
+	/**
+	designResults
+	Score, time and rank of the game just lost, with what to do next
+	*/
+	static String designResults()
+	{
+		String out = "";
+
+		out += BORDER + "\n";
+		out += TOP;
+		out += blanks(4);
+		out += "/                  - " + standIns(SCORE, POINTS_WIDTH) + " -                  /\n";
+		out += blanks(1);
+		out += "/                 " + standIns(TIME, Digits.TIME_WIDTH) + "                 /\n";
+		out += blanks(1);
+		out += "/                 Rank: " + standIns(RANK, POINTS_WIDTH) + "                 /\n";
+		out += blanks(1);
+		out += optionLines(RESULT_OPTIONS, 14);
+		out += blanks(7);
+		out += BOTTOM;
+		out += BORDER;
+
+		return out;
+
+	}// designResults
+
+	/**
+	optionLines
+	One line per option, with a cursor stand-in before it, indented
+	by the given margin
+	*/
+	static String optionLines(String[] options, int margin)
+	{
+		String out = "";
+
+		for (int i = 0; i < options.length; i++)
+		{
+			String line = "/" + " ".repeat(margin);
+
+			line += CURSOR + "  ";
+			line += options[i];
+			line += " ".repeat(Math.max(0, 44 - line.length()));
+
+			out += line + "/\n";
+		}
+
+		return out;
+
+	}// optionLines
+
+	static String standIns(char standIn, int count)
+	{
+		return String.valueOf(standIn).repeat(count);
+
+	}// standIns
+
+	static String blanks(int lines)
+	{
+		return BLANK.repeat(lines);
+
+	}// blanks
+
+}// Screens
@@ -0,0 +1,276 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+Server
+Serves games over a TCP port or a Unix socket to telnet-style clients
+drawn with ANSI escape codes. Every connection is a session with its
+own game, menus and seeds, running on a thread of its own. Sessions
+share nothing but the settings, which are only read, and the metrics,
+which are made for it.
+On Java 21 and later every session gets a virtual thread, so that
+thousands of mostly idle sessions cost little. The build targets
+Java 17, which has none: run there, every session takes a platform
+thread of a cached pool instead, which does not scale the same way.
+Run the server on Java 21 for virtual threads
+*/
+public class Server
+{
+	static final int BACKLOG = 1024; // connections waiting to be accepted
+	static final long STATS_INTERVAL = 10_000; // milliseconds between metric reports
+
+	// Telnet commands asking the client to send each key as it is typed
+	static final byte[] CHARACTER_MODE = {(byte)255, (byte)251, 1, (byte)255, (byte)251, 3};
+
+	Config config;
+	ServerSocketChannel listener;
+	ServerMetrics metrics;
+	SplitMix seeds; // split for each session, by the accepting thread only
+	ExecutorService sessions;
+	Leaderboard leaderboard; // shared by every session
+
+	Server(Config config, ServerSocketChannel listener)
+	{
+		this.config = config;
+		this.listener = listener;
+
+		metrics = new ServerMetrics();
+		seeds = new SplitMix(config.seed);
+		sessions = threadPerTask();
+		leaderboard = Leaderboard.open(config);
+
+	}// Server constructor
+
+	/**
+	open
+	Server listening where the settings say, on the Unix socket if
+	one is given and on the TCP port otherwise
+	*/
+	static Server open(Config config) throws IOException
+	{
+		ServerSocketChannel listener;
+
+		if (config.socket != null)
+		{
+			listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			listener.bind(UnixDomainSocketAddress.of(config.socket), BACKLOG);
+		}
+		else
+		{
+			listener = ServerSocketChannel.open();
+			listener.bind(new InetSocketAddress(config.port), BACKLOG);
+		}
+
+		return new Server(config, listener);
+
+	}// open
+
+	/**
+	threadPerTask
+	Executor running every task on a new virtual thread. The build
+	targets Java 17, so the executor is looked up by reflection and
+	is only there on a Java 21 runtime; on Java 17 every task takes a
+	platform thread of a cached pool, one per task running at once
+	*/
+	static ExecutorService threadPerTask()
+	{
+		try
+		{
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return Executors.newCachedThreadPool();
+		}
+
+	}// threadPerTask
+
+	/**
+	run
+	Accepts connections until the server is closed, starting a
+	session for each
+	*/
+	void run() throws IOException
+	{
+		System.out.println("serving games on " + listener.getLocalAddress());
+
+		Thread reporter = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					while (true)
+					{
+						Thread.sleep(STATS_INTERVAL);
+						System.err.println(metrics);
+						System.err.println(GameMetrics.shared());
+					}
+				}
+				catch (InterruptedException e)
+				{
+				}
+
+			}// run
+		}, "server metrics");
+
+		reporter.setDaemon(true);
+		reporter.start();
+
+		try
+		{
+			while (true)
+			{
+				SocketChannel channel = listener.accept();
+
+				if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY))
+					channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+				sessions.execute(new Session(channel, seeds.split()));
+			}
+		}
+		catch (ClosedChannelException e)
+		{
+			// closed by close()
+		}
+		finally
+		{
+			reporter.interrupt();
+		}
+
+	}// run
+
+	/**
+	close
+	Stops accepting connections and ends every session
+	*/
+	void close() throws IOException
+	{
+		listener.close();
+		sessions.shutdownNow();
+		leaderboard.close();
+
+		if (config.socket != null)
+			Files.deleteIfExists(Path.of(config.socket));
+
+	}// close
+
+	/**
+	Session
+	One connection, running a TerminalGame over it. Every batch of
+	keys read is answered with a frame, ending with Terminal.FRAME_END
+	*/
+	class Session implements Runnable
+	{
+		SocketChannel channel;
+		TerminalGame game;
+		ByteBuffer in;
+		long games, commands, turns; // already added to the metrics
+
+		Session(SocketChannel channel, SplitMix seeds)
+		{
+			this.channel = channel;
+
+			game = new TerminalGame(config, seeds, leaderboard);
+			in = ByteBuffer.allocate(256);
+
+		}// Session constructor
+
+		public void run()
+		{
+			metrics.opened();
+
+			try
+			{
+				channel.write(ByteBuffer.wrap(CHARACTER_MODE));
+				send(game.draw());
+
+				while (!game.quit)
+				{
+					in.clear();
+					int read = channel.read(in);
+
+					if (read < 0)
+						break;
+
+					metrics.bytesIn.add(read);
+					in.flip();
+
+					while (in.hasRemaining())
+						game.read(in.get() & 0xff);
+
+					game.endOfInput();
+					count();
+
+					if (!game.quit)
+						send(game.draw());
+				}
+
+				if (game.quit)
+					send(game.leave());
+			}
+			catch (IOException e)
+			{
+				// the client went away
+			}
+			catch (RuntimeException e)
+			{
+				metrics.failed.increment();
+				e.printStackTrace();
+			}
+			finally
+			{
+				game.close();
+
+				try
+				{
+					channel.close();
+				}
+				catch (IOException e)
+				{
+				}
+
+				metrics.closed();
+			}
+
+		}// run
+
+		/**
+		count
+		Adds what was played since the last count to the metrics
+		*/
+		void count()
+		{
+			metrics.games.add(game.games - games);
+			metrics.commands.add(game.commands - commands);
+			metrics.turns.add(game.turns - turns);
+
+			games = game.games;
+			commands = game.commands;
+			turns = game.turns;
+
+		}// count
+
+		void send(ByteBuffer codes) throws IOException
+		{
+			metrics.bytesOut.add(codes.remaining());
+
+			while (codes.hasRemaining())
+				channel.write(codes);
+
+		}// send
+
+	}// Session
+
+}// Server
@@ -0,0 +1,59 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ServerMetrics
+Counters of a game server, updated by every session at once without
+locking: connections opened and closed, games, commands, turns and
+the bytes that went each way
+*/
+public class ServerMetrics
+{
+	LongAdder accepted = new LongAdder();
+	LongAdder closed = new LongAdder();
+	LongAdder failed = new LongAdder(); // sessions ended by an error rather than a disconnect
+	AtomicInteger active = new AtomicInteger();
+	AtomicInteger peak = new AtomicInteger(); // most sessions active at once
+
+	LongAdder games = new LongAdder();
+	LongAdder commands = new LongAdder();
+	LongAdder turns = new LongAdder();
+	LongAdder bytesIn = new LongAdder();
+	LongAdder bytesOut = new LongAdder();
+
+	/**
+	opened
+	Counts a session that just started
+	*/
+	void opened()
+	{
+		accepted.increment();
+		int now = active.incrementAndGet();
+
+		for (int most = peak.get(); now > most; most = peak.get())
+			if (peak.compareAndSet(most, now))
+				break;
+
+	}// opened
+
+	/**
+	closed
+	Counts a session that just ended
+	*/
+	void closed()
+	{
+		active.decrementAndGet();
+		closed.increment();
+
+	}// closed
+
+	public String toString()
+	{
+		return String.format("sessions %d active %d peak %d accepted %d closed %d failed, "
+				+ "%d games %d commands %d turns, %d bytes in %d bytes out",
+				active.get(), peak.get(), accepted.sum(), closed.sum(), failed.sum(),
+				games.sum(), commands.sum(), turns.sum(), bytesIn.sum(), bytesOut.sum());
+
+	}// toString
+
+}// ServerMetrics
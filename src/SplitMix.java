@@ -0,0 +1,65 @@
+/**
+SplitMix
+Random number generator of a single game, the SplitMix64 algorithm
+behind java.util.SplittableRandom. Unlike SplittableRandom its whole
+state is one visible long, so a game can be copied or saved and
+resumed with the exact same rolls still to come
+*/
+public class SplitMix
+{
+	static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	long state;
+
+	SplitMix(long seed)
+	{
+		state = seed;
+
+	}// SplitMix constructor
+
+	/**
+	nextLong
+	Next 64 random bits
+	*/
+	long nextLong()
+	{
+		long z = (state += GOLDEN_GAMMA);
+
+		z = (z ^ (z >>> 30))*0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27))*0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+
+	}// nextLong
+
+	/**
+	nextInt
+	Random number from 0 up to, but not including, bound
+	*/
+	int nextInt(int bound)
+	{
+		return (int)((nextLong() >>> 1)%bound);
+
+	}// nextInt
+
+	/**
+	split
+	New generator whose stream is independent from this one's,
+	for handing to another game or thread
+	*/
+	SplitMix split()
+	{
+		return new SplitMix(nextLong());
+
+	}// split
+
+	/**
+	copy
+	Generator in the same state as this one
+	*/
+	SplitMix copy()
+	{
+		return new SplitMix(state);
+
+	}// copy
+
+}// SplitMix
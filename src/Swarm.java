@@ -0,0 +1,163 @@
+import java.util.Arrays;
+
+/**
+Swarm
+Storage for the spiders of a game, one array per field rather than
+one object per spider, so a turn sweeps the rows, the columns and the
+moves of all the spiders straight through memory. A spider is known
+by its index, its place in every array. The spiders fill the first
+size places: a dead spider's place is taken by the last one, so
+adding or removing a spider takes constant time and there are no
+gaps to skip. An index is only good until the next removal, which
+can move the last spider; the board's occupant cells are kept up to
+date by the engine
+*/
+public class Swarm
+{
+	static final int NONE = -1;
+
+	int[] rows;
+	int[] cols;
+	int[] targets;  // cell each spider means to step to, or Engine.NO_TARGET
+	byte[] settled; // whether each spider's move goes ahead, once settled
+	int size;
+
+	// Scratch of sortByRow
+	int[] spareRows;
+	int[] spareCols;
+	int[] starts;
+
+	Swarm()
+	{
+		rows = new int[16];
+		cols = new int[16];
+		targets = new int[16];
+		settled = new byte[16];
+		spareRows = new int[16];
+		spareCols = new int[16];
+		starts = new int[1];
+
+		size = 0;
+
+	}// Swarm constructor
+
+	/**
+	add
+	Stores a spider standing at the given row and column, with no
+	move to make, and returns its index
+	*/
+	int add(int row, int col)
+	{
+		if (size == rows.length)
+			grow(2*size);
+
+		rows[size] = row;
+		cols[size] = col;
+		targets[size] = Engine.NO_TARGET;
+		settled[size] = Engine.STAYS;
+
+		return size++;
+
+	}// add
+
+	/**
+	remove
+	Removes the spider at the given index, moving the last spider
+	into its place. Returns the index the moved spider had, or NONE
+	if the removed spider was the last
+	*/
+	int remove(int index)
+	{
+		int last = --size;
+
+		if (index == last)
+			return NONE;
+
+		rows[index] = rows[last];
+		cols[index] = cols[last];
+		targets[index] = targets[last];
+		settled[index] = settled[last];
+
+		return last;
+
+	}// remove
+
+	/**
+	load
+	Takes the spiders of another swarm, keeping their indices
+	*/
+	void load(Swarm from)
+	{
+		if (rows.length < from.size)
+			grow(from.rows.length);
+
+		System.arraycopy(from.rows, 0, rows, 0, from.size);
+		System.arraycopy(from.cols, 0, cols, 0, from.size);
+		System.arraycopy(from.targets, 0, targets, 0, from.size);
+		System.arraycopy(from.settled, 0, settled, 0, from.size);
+
+		size = from.size;
+
+	}// load
+
+	/**
+	sortByRow
+	Puts the spiders in order of their rows, with a counting sort over
+	the given number of rows, so that a sweep over the swarm goes down
+	the board rather than all over it. Targets and settled moves are
+	not carried along, since every turn aims every spider again
+	*/
+	void sortByRow(int rowCount)
+	{
+		if (starts.length < rowCount + 1)
+			starts = new int[rowCount + 1];
+
+		Arrays.fill(starts, 0, rowCount + 1, 0);
+
+		for (int s = 0; s < size; s++)
+			starts[rows[s] + 1]++;
+
+		for (int r = 0; r < rowCount; r++)
+			starts[r + 1] += starts[r];
+
+		for (int s = 0; s < size; s++)
+		{
+			int to = starts[rows[s]]++;
+
+			spareRows[to] = rows[s];
+			spareCols[to] = cols[s];
+		}
+
+		int[] swap = rows;
+		rows = spareRows;
+		spareRows = swap;
+
+		swap = cols;
+		cols = spareCols;
+		spareCols = swap;
+
+	}// sortByRow
+
+	/**
+	rowStart
+	Index of the first spider on the given row or below, as of the
+	last sortByRow
+	*/
+	int rowStart(int row)
+	{
+		return (row == 0) ? 0 : starts[row - 1];
+
+	}// rowStart
+
+	void grow(int capacity)
+	{
+		rows = Arrays.copyOf(rows, capacity);
+		cols = Arrays.copyOf(cols, capacity);
+		targets = Arrays.copyOf(targets, capacity);
+		settled = Arrays.copyOf(settled, capacity);
+		spareRows = new int[capacity];
+		spareCols = new int[capacity];
+
+	}// grow
+
+}// Swarm
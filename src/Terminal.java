@@ -0,0 +1,194 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+Terminal
+Draws screens of text on an ANSI terminal. It remembers what the
+terminal shows, so each frame is written as cursor moves and runs
+of the characters that changed, and nothing at all for the rest.
+The output of a frame is left in a reusable buffer, and every frame
+ends with FRAME_END, a no-op code readers can wait for
+*/
+public class Terminal
+{
+	static final String CLEAR = "\033[2J";
+	static final String HIDE_CURSOR = "\033[?25l";
+	static final String SHOW_CURSOR = "\033[?25h";
+	static final String FRAME_END = "\033[0m"; // resets the colours, which are never changed
+	static final int MAX_GAP = 4; // unchanged characters rewritten rather than moved over
+	static final int NOT_KNOWN = -1;
+
+	int lines, columns;
+	char[] shown; // characters on the terminal, line by line
+	boolean started; // the screen was cleared for the first frame
+
+	int line, column; // where the cursor is, NOT_KNOWN before the first frame
+
+	byte[] bytes;
+	int length;
+	ByteBuffer output; // wraps bytes
+
+	/**
+	Terminal
+	Screen of the given view of the board: its header and footer
+	lines and the bordered board lines in between
+	*/
+	Terminal(int viewRows, int viewCols)
+	{
+		lines = viewRows + 2;
+		columns = BoardFrame.width(viewCols) + 1;
+
+		shown = new char[lines*columns];
+		Arrays.fill(shown, ' ');
+		started = false;
+		line = NOT_KNOWN;
+		column = NOT_KNOWN;
+
+		bytes = new byte[4*shown.length];
+		output = ByteBuffer.wrap(bytes);
+
+	}// Terminal constructor
+
+	/**
+	draw
+	Writes the codes bringing the terminal from what it shows to
+	the given text, returning them in a buffer ready to be written
+	*/
+	ByteBuffer draw(char[] text)
+	{
+		length = 0;
+
+		if (!started)
+		{
+			put(CLEAR);
+			put(HIDE_CURSOR);
+			started = true;
+		}
+
+		int cell = 0;
+		int at = 0;
+
+		for (int i = 0; i < text.length && at < lines; i++)
+		{
+			if (text[i] == '\n')
+			{
+				while (cell < (at + 1)*columns)
+					write(cell++, ' ');
+
+				at++;
+			}
+			else if (cell < (at + 1)*columns)
+				write(cell++, text[i]);
+		}
+
+		while (cell < shown.length)
+			write(cell++, ' ');
+
+		put(FRAME_END);
+
+		output.clear();
+		output.limit(length);
+		return output;
+
+	}// draw
+
+	ByteBuffer draw(String text)
+	{
+		return draw(text.toCharArray());
+
+	}// draw
+
+	/**
+	leave
+	Codes handing the terminal back: the cursor shown again, on the
+	line below the screen
+	*/
+	ByteBuffer leave()
+	{
+		length = 0;
+
+		moveTo(lines, 0);
+		put(SHOW_CURSOR);
+		put("\r\n");
+
+		output.clear();
+		output.limit(length);
+		return output;
+
+	}// leave
+
+	/**
+	write
+	Brings one cell up to date. The cursor is moved there unless it
+	is already a few cells before it on the same line, in which case
+	the unchanged characters between are written over instead
+	*/
+	void write(int cell, char ch)
+	{
+		if (shown[cell] == ch)
+			return;
+
+		int l = cell/columns;
+		int c = cell%columns;
+
+		if (l == line && column <= c && c - column <= MAX_GAP)
+		{
+			for (int i = cell - (c - column); i < cell; i++)
+				putByte(shown[i]);
+		}
+		else
+			moveTo(l, c);
+
+		putByte(ch);
+		shown[cell] = ch;
+		column = c + 1;
+
+	}// write
+
+	/**
+	moveTo
+	Moves the cursor to the given line and column, counted from 0
+	*/
+	void moveTo(int l, int c)
+	{
+		putByte('\033');
+		putByte('[');
+		putNumber(l + 1);
+		putByte(';');
+		putNumber(c + 1);
+		putByte('H');
+
+		line = l;
+		column = c;
+
+	}// moveTo
+
+	void putNumber(int n)
+	{
+		if (n >= 10)
+			putNumber(n/10);
+
+		putByte((char)('0' + n%10));
+
+	}// putNumber
+
+	void put(String codes)
+	{
+		for (int i = 0; i < codes.length(); i++)
+			putByte(codes.charAt(i));
+
+	}// put
+
+	void putByte(char ch)
+	{
+		if (length == bytes.length)
+		{
+			bytes = Arrays.copyOf(bytes, 2*length);
+			output = ByteBuffer.wrap(bytes);
+		}
+
+		bytes[length++] = (byte)ch;
+
+	}// putByte
+
+}// Terminal
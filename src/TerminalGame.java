@@ -0,0 +1,524 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+TerminalGame
+The game with its menus for a text terminal, without AWT: the same
+screens as the window, drawn with ANSI codes through a Terminal so
+only what changed is sent. It is fed the bytes typed, understanding
+arrow keys and skipping telnet commands, and draws after each batch.
+The same class runs the game on the terminal it was started from
+and for every connection to a server.
+Shots are played out at once rather than animated; i j k l shoot
+as well as the arrow keys, for terminals that do not send those
+*/
+public class TerminalGame
+{
+	// Keys that are not characters
+	static final int ENTER = '\r';
+	static final int ESC = 27;
+	static final int UP = 0x101;
+	static final int DOWN = 0x102;
+	static final int RIGHT = 0x103;
+	static final int LEFT = 0x104;
+
+	// Screens
+	static final int TITLE = 0;
+	static final int INFORMATION = 1;
+	static final int OPTIONS = 2;
+	static final int PLAYING = 3;
+	static final int PAUSED = 4;
+	static final int GAME_OVER = 5;
+	static final int RESULTS = 6;
+
+	// Where the input parser is
+	static final int TEXT = 0;
+	static final int ESCAPE = 1;    // after ESC
+	static final int SEQUENCE = 2;  // after ESC [
+	static final int COMMAND = 3;   // after the telnet IAC
+	static final int OPTION = 4;    // after IAC and a negotiation command
+	static final int SUBNEGOTIATION = 5;
+	static final int SUBNEGOTIATION_COMMAND = 6;
+
+	static final int IAC = 255; // telnet command
+	static final int SB = 250;  // telnet subnegotiation start
+	static final int SE = 240;  // telnet subnegotiation end
+
+	Config config;
+	SplitMix seeds; // seeds each new game
+	Engine engine;
+	BoardFrame frame;
+	Screens screens;
+	Terminal terminal;
+	GameMetrics metrics;
+	Leaderboard leaderboard;
+	Replay replay; // recording of the game, or null before the first
+
+	int screen, index;
+	int previous, previousIndex; // screen to go back to, and its selection
+	boolean reverseControls;
+	long startTime, endTime;
+	int rank; // of the game just lost on the leaderboard, 0 if it is not on it
+	boolean quit;
+
+	int state;
+	int last; // byte read before the current one
+
+	long games, commands, turns; // played so far
+
+	TerminalGame(Config config, SplitMix seeds, Leaderboard leaderboard)
+	{
+		this.config = config;
+		this.seeds = seeds;
+		this.leaderboard = leaderboard;
+
+		frame = new BoardFrame(config.viewRows, config.viewCols);
+		screens = new Screens(config.viewRows, config.viewCols);
+		terminal = new Terminal(config.viewRows, config.viewCols);
+		metrics = GameMetrics.shared();
+
+		screen = TITLE;
+		index = 0;
+		previous = TITLE;
+		previousIndex = 0;
+		reverseControls = false;
+		quit = false;
+		state = TEXT;
+
+	}// TerminalGame constructor
+
+	/**
+	read
+	Feeds one byte of input through the parser, pressing the keys
+	it makes up
+	*/
+	void read(int b)
+	{
+		int before = last;
+		last = b;
+
+		switch (state)
+		{
+			case TEXT:
+				if (b == ESC)
+					state = ESCAPE;
+				else if (b == IAC)
+					state = COMMAND;
+				else if (b == '\n' || b == 0)
+				{
+					// the end of a line is \r, \r\n or \r\0 depending on the terminal
+					if (before != '\r')
+						press(ENTER);
+				}
+				else
+					press(Character.toLowerCase(b));
+				break;
+
+			case ESCAPE:
+				if (b == '[' || b == 'O')
+					state = SEQUENCE;
+				else
+				{
+					state = TEXT;
+					press(ESC);
+					read(b);
+				}
+				break;
+
+			case SEQUENCE:
+				if (b >= 0x40) // final byte of the sequence
+				{
+					state = TEXT;
+
+					if ('A' <= b && b <= 'D')
+						press(UP + b - 'A'); // A B C D: up, down, right, left
+				}
+				break;
+
+			case COMMAND:
+				if (b == SB)
+					state = SUBNEGOTIATION;
+				else if (b >= 251 && b <= 254) // WILL, WONT, DO, DONT
+					state = OPTION;
+				else
+					state = TEXT;
+				break;
+
+			case OPTION:
+				state = TEXT;
+				break;
+
+			case SUBNEGOTIATION:
+				if (b == IAC)
+					state = SUBNEGOTIATION_COMMAND;
+				break;
+
+			case SUBNEGOTIATION_COMMAND:
+				state = (b == SE) ? TEXT : SUBNEGOTIATION;
+				break;
+		}
+
+	}// read
+
+	/**
+	endOfInput
+	Called when the bytes read so far have all been fed: an ESC
+	left waiting for the rest of a sequence was the key itself
+	*/
+	void endOfInput()
+	{
+		if (state == ESCAPE)
+		{
+			state = TEXT;
+			press(ESC);
+		}
+
+	}// endOfInput
+
+	/**
+	press
+	Acts on one key in the current screen
+	*/
+	void press(int key)
+	{
+		if (key == 3 || key == 4) // ctrl-c and ctrl-d
+		{
+			quit = true;
+			return;
+		}
+
+		switch (screen)
+		{
+			case TITLE:
+				if (select(key, Screens.TITLE_OPTIONS.length))
+				{
+					switch (index)
+					{
+						case 0: start(); break;
+						case 1: show(INFORMATION); break;
+						case 2: show(OPTIONS); break;
+						case 3: quit = true; break;
+					}
+				}
+				else if (key == ESC)
+					index = Screens.TITLE_OPTIONS.length - 1; // Exit
+				break;
+
+			case INFORMATION:
+				back();
+				break;
+
+			case OPTIONS:
+				if (key == ESC)
+					back();
+				else
+					reverseControls = !reverseControls;
+				break;
+
+			case PLAYING:
+				if (key == ESC)
+					show(PAUSED);
+				else
+					play(key);
+				break;
+
+			case PAUSED:
+				if (select(key, Screens.PAUSE_OPTIONS.length))
+				{
+					switch (index)
+					{
+						case 0: show(PLAYING); break;
+						case 1: start(); break;
+						case 2: show(OPTIONS); break;
+						case 3: show(INFORMATION); break;
+						case 4: show(TITLE); break;
+					}
+				}
+				else if (key == ESC)
+					show(PLAYING);
+				break;
+
+			case GAME_OVER:
+				if (key == ESC || key == ENTER)
+					show(RESULTS);
+				break;
+
+			case RESULTS:
+				if (select(key, Screens.RESULT_OPTIONS.length))
+				{
+					if (index == 0)
+						start();
+					else
+						show(TITLE);
+				}
+				break;
+		}
+
+	}// press
+
+	/**
+	select
+	Moves the selection of a menu with the given number of options,
+	returning true if the key chose the option selected
+	*/
+	boolean select(int key, int options)
+	{
+		switch (key)
+		{
+			case UP:
+			case 'w':
+				index = (index > 0) ? index - 1 : options - 1;
+				return false;
+
+			case DOWN:
+			case 's':
+				index = (index < options - 1) ? index + 1 : 0;
+				return false;
+
+			case ENTER:
+				return true;
+		}
+
+		return false;
+
+	}// select
+
+	/**
+	play
+	Plays the command of a key during a game
+	*/
+	void play(int key)
+	{
+		int command;
+
+		switch (key)
+		{
+			case 'w': command = Engine.MOVE_UP; break;
+			case 'a': command = Engine.MOVE_LEFT; break;
+			case 's': command = Engine.MOVE_DOWN; break;
+			case 'd': command = Engine.MOVE_RIGHT; break;
+			case ' ': command = Engine.WAIT; break;
+			case UP: case 'i': command = Engine.SHOOT_UP; break;
+			case LEFT: case 'j': command = Engine.SHOOT_LEFT; break;
+			case DOWN: case 'k': command = Engine.SHOOT_DOWN; break;
+			case RIGHT: case 'l': command = Engine.SHOOT_RIGHT; break;
+			default: return;
+		}
+
+		if (command >= Engine.SHOOT_UP && reverseControls)
+			command = Engine.SHOOT_UP + (command - Engine.SHOOT_UP + 2)%4;
+
+		int turn = engine.turn;
+
+		if (engine.play(command))
+			replay.add(command, engine);
+
+		commands++;
+		turns += engine.turn - turn;
+
+		if (engine.over)
+		{
+			replay.finish(engine);
+			endTime = System.currentTimeMillis();
+			rank = leaderboard.add(new Leaderboard.Run(engine.score, engine.turn, endTime - startTime, engine.seed, reverseControls));
+			show(GAME_OVER);
+		}
+
+	}// play
+
+	/**
+	start
+	Starts a new game with the next seed
+	*/
+	void start()
+	{
+		close();
+
+		engine = new Engine(config, seeds.nextLong());
+		engine.metrics = metrics;
+		replay = Replay.record(config, engine);
+		games++;
+		startTime = System.currentTimeMillis();
+		show(PLAYING);
+
+	}// start
+
+	/**
+	close
+	Ends the recording of the last game, if it was left unfinished
+	*/
+	void close()
+	{
+		if (replay != null)
+			replay.close();
+
+	}// close
+
+	void show(int next)
+	{
+		previous = screen;
+		previousIndex = index;
+		screen = next;
+		index = 0;
+
+	}// show
+
+	void back()
+	{
+		int selected = previousIndex;
+
+		show(previous);
+		index = selected;
+
+	}// back
+
+	/**
+	draw
+	Codes bringing the terminal up to date with the current screen
+	*/
+	ByteBuffer draw()
+	{
+		long start = System.nanoTime();
+		char[] text;
+
+		if (screen == PLAYING || screen == GAME_OVER)
+		{
+			frame.drawScreen(engine);
+			frame.clearChanges();
+			text = frame.text;
+			metrics.board(start);
+		}
+		else
+		{
+			text = menu();
+			metrics.menu(start);
+		}
+
+		start = System.nanoTime();
+		ByteBuffer codes = terminal.draw(text);
+		metrics.output(start);
+
+		return codes;
+
+	}// draw
+
+	/**
+	menu
+	Text of the current screen, which is not the game's
+	*/
+	char[] menu()
+	{
+		switch (screen)
+		{
+			case INFORMATION:
+				return screens.information();
+
+			case OPTIONS:
+				return screens.options(reverseControls);
+
+			case PAUSED:
+				return screens.pause(index);
+
+			case RESULTS:
+				return screens.results(index, engine.score, endTime - startTime, rank);
+
+			default:
+				return screens.title(index, leaderboard.best());
+		}
+
+	}// menu
+
+	/**
+	leave
+	Codes handing the terminal back once the player quit
+	*/
+	ByteBuffer leave()
+	{
+		return terminal.leave();
+
+	}// leave
+
+	/**
+	playOnTerminal
+	Runs the game on the terminal the program was started from,
+	switched to raw mode where stty is available so keys arrive
+	as they are pressed
+	*/
+	static void playOnTerminal(Config config) throws IOException
+	{
+		String saved = stty("-g");
+
+		if (saved != null)
+			stty("raw -echo");
+
+		TerminalGame game = new TerminalGame(config, new SplitMix(config.seed), Leaderboard.open(config));
+
+		try
+		{
+			byte[] typed = new byte[256];
+
+			write(game.draw());
+
+			while (!game.quit)
+			{
+				int read = System.in.read(typed);
+
+				if (read < 0)
+					break;
+
+				for (int i = 0; i < read; i++)
+					game.read(typed[i] & 0xff);
+
+				game.endOfInput();
+
+				if (!game.quit)
+					write(game.draw());
+			}
+
+			write(game.leave());
+		}
+		finally
+		{
+			game.close();
+
+			if (saved != null)
+				stty(saved.trim());
+		}
+
+	}// playOnTerminal
+
+	static void write(ByteBuffer codes)
+	{
+		System.out.write(codes.array(), 0, codes.limit());
+		System.out.flush();
+
+	}// write
+
+	/**
+	stty
+	Runs stty on the controlling terminal, returning what it printed,
+	or null if it failed
+	*/
+	static String stty(String arguments)
+	{
+		try
+		{
+			Process process = new ProcessBuilder("sh", "-c", "stty " + arguments + " < /dev/tty")
+					.redirectErrorStream(true).start();
+			String printed = new String(process.getInputStream().readAllBytes());
+
+			return (process.waitFor() == 0) ? printed : null;
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+
+	}// stty
+
+}// TerminalGame